@@ -26,29 +26,49 @@ package com.rylinaux.plugman;
  * #L%
  */
 
-import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
 import com.rylinaux.plugman.messaging.MessageFormatter;
+import com.rylinaux.plugman.pojo.PluginFileState;
+import com.rylinaux.plugman.pojo.PluginJarEntry;
 import com.rylinaux.plugman.util.BukkitCommandWrap;
 import com.rylinaux.plugman.util.BukkitCommandWrap_Useless;
+import com.rylinaux.plugman.util.CommandIndex;
+import com.rylinaux.plugman.util.CommandSyncCoalescer;
+import com.rylinaux.plugman.util.CpuSampler;
+import com.rylinaux.plugman.util.JarFingerprint;
+import com.rylinaux.plugman.util.LeakTracker;
+import com.rylinaux.plugman.util.ListenerProfiler;
+import com.rylinaux.plugman.util.MetricsRegistry;
+import com.rylinaux.plugman.util.OperationScheduler;
+import com.rylinaux.plugman.util.PhaseTimings;
+import com.rylinaux.plugman.util.PlayerCommandRefresher;
+import com.rylinaux.plugman.util.PlugManMetrics;
+import com.rylinaux.plugman.util.PluginFileStore;
+import com.rylinaux.plugman.util.PluginFileWatcher;
+import com.rylinaux.plugman.util.PluginInventory;
+import com.rylinaux.plugman.util.PluginJarIndex;
 import com.rylinaux.plugman.util.PluginUtil;
+import com.rylinaux.plugman.util.PrometheusExporter;
+import com.rylinaux.plugman.util.ReclamationPolicy;
+import com.rylinaux.plugman.util.ServerAccessors;
+import com.rylinaux.plugman.util.StallWatchdog;
+import com.rylinaux.plugman.util.StartupProfiler;
+import com.rylinaux.plugman.util.TaskProfiler;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.plugin.InvalidDescriptionException;
-import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.SimplePluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
+import javax.management.JMException;
 import java.io.*;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.*;
-import java.util.jar.JarFile;
-import java.util.stream.Collectors;
-import java.util.zip.ZipException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 /**
  * Plugin manager for Bukkit servers.
@@ -79,27 +99,99 @@ public class PlugMan extends JavaPlugin {
      */
     private final HashMap<String, Map.Entry<Long, Boolean>> resourceMap = new HashMap<>();
     /**
-     * Stores all file names + hashes for auto (re/un)load
+     * Stores all file names + hashes + plugin names for auto (re/un)load
      */
-    private final HashMap<String, String> fileHashMap = new HashMap<>();
+    private final PluginFileStore pluginFileStore = new PluginFileStore();
     /**
-     * Stores all file names + plugin names for auto unload
+     * Index of which plugin owns which registered command
      */
-    private final HashMap<String, String> filePluginMap = new HashMap<>();
+    private final CommandIndex commandIndex = new CommandIndex();
+    /**
+     * Which plugins are loaded and enabled, for threads that may not read the plugin manager
+     */
+    private final PluginInventory pluginInventory = new PluginInventory();
+    /**
+     * Measures what the event listeners of plugins cost on request
+     */
+    private final ListenerProfiler listenerProfiler = new ListenerProfiler(this);
+    /**
+     * Measures what the scheduler tasks of plugins cost on request
+     */
+    private final TaskProfiler taskProfiler = new TaskProfiler(this);
+    /**
+     * Samples where the main thread spends its time on request
+     */
+    private final CpuSampler cpuSampler = new CpuSampler(this);
+    /**
+     * Counters, latency histograms and gauges of everything PlugMan does
+     */
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+    /**
+     * How long the phases of plugin operations take
+     */
+    private final PhaseTimings phaseTimings = new PhaseTimings(this.metricsRegistry);
     private boolean notifyOnBrokenCommandRemoval;
     private Field lookupNamesField = null;
     /**
      * The command manager which adds all command we want so 1.13+ players can instantly tab-complete them
      */
     private BukkitCommandWrap bukkitCommandWrap = null;
+    /**
+     * Collects command tree changes so batched (re/un)loads only sync once
+     */
+    private CommandSyncCoalescer commandSyncCoalescer = null;
+    /**
+     * Spreads command tree updates for online players over several ticks
+     */
+    private PlayerCommandRefresher playerCommandRefresher = null;
+    /**
+     * Spreads bulk operations over several ticks
+     */
+    private OperationScheduler operationScheduler = null;
+    /**
+     * Reports class loaders of unloaded plugins that are never collected, null if disabled
+     */
+    private LeakTracker leakTracker = null;
+    /**
+     * Reports operations blocking the main thread, null if disabled
+     */
+    private StallWatchdog stallWatchdog = null;
+    /**
+     * When to force a garbage collection after unloading plugins
+     */
+    private ReclamationPolicy reclamationPolicy = ReclamationPolicy.PLATFORM;
+    /**
+     * Publishes the metrics as an MBean and to the exporters
+     */
+    private PlugManMetrics plugManMetrics = null;
+    /**
+     * Writes the metrics file for Prometheus, null if disabled
+     */
+    private BukkitTask prometheusTask = null;
+    /**
+     * Records how long plugins take to enable while the server boots, null if disabled
+     */
+    private StartupProfiler startupProfiler = null;
     /**
      * List of plugins to ignore, partially.
      */
     private List<String> ignoredPlugins = null;
+    /**
+     * Index of all jars inside the plugins directory
+     */
+    private PluginJarIndex pluginJarIndex = null;
+    /**
+     * Watches the plugins directory for auto (re/un)load
+     */
+    private PluginFileWatcher pluginFileWatcher = null;
     /**
      * The message manager
      */
     private MessageFormatter messageFormatter = null;
+    /**
+     * Server internals used to load and unload plugins, resolved once on enable
+     */
+    private ServerAccessors serverAccessors = null;
 
     private static InputStream getResourceStatic(String filename) {
         try {
@@ -203,6 +295,49 @@ public class PlugMan extends JavaPlugin {
             this.addPluginToList();
     }
 
+    /**
+     * Expose the state of the subsystems as gauges.
+     */
+    private void registerGauges() {
+        this.metricsRegistry.gauge("plugins.loaded", this.pluginInventory::getLoadedCount);
+        this.metricsRegistry.gauge("commands.syncs", this.commandSyncCoalescer::getSyncCount);
+        this.metricsRegistry.gauge("commands.refresh-queue", this.playerCommandRefresher::getQueueDepth);
+        this.metricsRegistry.gauge("operations.queued", this.operationScheduler::getQueued);
+        this.metricsRegistry.gauge("fingerprint.cache-hits", JarFingerprint::getHits);
+        this.metricsRegistry.gauge("fingerprint.cache-misses", JarFingerprint::getMisses);
+
+        if (this.leakTracker != null) {
+            this.metricsRegistry.gauge("classloaders.pending", this.leakTracker::getPendingCount);
+            this.metricsRegistry.gauge("classloaders.collected", this.leakTracker::getCollectedCount);
+            this.metricsRegistry.gauge("classloaders.leaked", this.leakTracker::getLeakedCount);
+        }
+    }
+
+    /**
+     * Publish the metrics through JMX and the Prometheus metrics file, as configured.
+     */
+    private void startMetricsExport() {
+        this.plugManMetrics = new PlugManMetrics(this.metricsRegistry, this.pluginInventory::getStates);
+
+        if (this.getConfig().getBoolean("metrics.jmx", true)) try {
+            this.plugManMetrics.register("bukkit");
+        } catch (JMException e) {
+            this.getLogger().log(Level.WARNING, "Could not register the metrics MBean", e);
+        }
+
+        if (!this.getConfig().getBoolean("metrics.prometheus.enabled", true)) return;
+
+        PrometheusExporter prometheusExporter = new PrometheusExporter(this.plugManMetrics, new File(this.getDataFolder(), this.getConfig().getString("metrics.prometheus.file", "metrics.prom")));
+        long period = Math.max(1, this.getConfig().getLong("metrics.prometheus.interval-seconds", 30)) * 20;
+        this.prometheusTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
+            try {
+                prometheusExporter.export();
+            } catch (IOException e) {
+                this.getLogger().log(Level.WARNING, "Could not write the Prometheus metrics file", e);
+            }
+        }, period, period);
+    }
+
     @Override
     public void onEnable() {
         PlugMan.instance = this;
@@ -218,6 +353,19 @@ public class PlugMan extends JavaPlugin {
 
         this.initConfig();
 
+        if (this.getConfig().getBoolean("startup-profiler.enabled", true)) {
+            this.startupProfiler = new StartupProfiler(this, new File(this.getDataFolder(), "startup-history.jsonl"), this.getConfig().getInt("startup-profiler.history-size", 30));
+            this.startupProfiler.load();
+
+            // Without worlds the server is still booting, otherwise PlugMan was loaded into a running server
+            if (Bukkit.getWorlds().isEmpty()) this.startupProfiler.start();
+        }
+
+        this.serverAccessors = ServerAccessors.resolve();
+        this.getLogger().info("Resolved server accessors in " + String.format("%.2f", this.serverAccessors.getResolveNanos() / 1_000_000.0) + "ms (unload: " + this.serverAccessors.canUnload() + ", paper: " + this.serverAccessors.hasPaper() + ")");
+        if (!this.serverAccessors.canUnload())
+            this.getLogger().warning("Could not find the plugin manager internals needed to unload plugins, unloading will fail on this server");
+
         try {
             Class.forName("com.mojang.brigadier.CommandDispatcher");
             this.bukkitCommandWrap = new BukkitCommandWrap();
@@ -225,146 +373,80 @@ public class PlugMan extends JavaPlugin {
             this.bukkitCommandWrap = new BukkitCommandWrap_Useless();
         }
 
-        for (File file : new File("plugins").listFiles()) {
-            if (file.isDirectory()) continue;
-            if (!file.getName().toLowerCase(Locale.ROOT).endsWith(".jar")) continue;
-            String hash = null;
-            try {
-                hash = Files.asByteSource(file).hash(Hashing.md5()).toString();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            this.fileHashMap.put(file.getName(), hash);
+        this.playerCommandRefresher = new PlayerCommandRefresher(this, this.getConfig().getInt("command-refresh.players-per-tick", 20));
+        this.commandSyncCoalescer = new CommandSyncCoalescer(this, this.bukkitCommandWrap, this.playerCommandRefresher);
+        this.operationScheduler = new OperationScheduler(this, this.getConfig().getLong("bulk-operations.millis-per-tick", 15));
 
-            JarFile jarFile = null;
-            try {
-                jarFile = new JarFile(file);
-            } catch (IOException e) {
-                if (e instanceof ZipException) {
-                    System.out.println("Possible broken plugin detected: " + file.getName());
-                    continue;
-                }
-                e.printStackTrace();
-                continue;
-            }
+        if (this.getConfig().getBoolean("stall-watchdog.enabled", true)) {
+            this.stallWatchdog = new StallWatchdog(this, this.getConfig().getLong("stall-watchdog.threshold-millis", 5000),
+                    this.getConfig().getLong("stall-watchdog.interval-millis", 5000), this.getConfig().getBoolean("stall-watchdog.abort-queued", true));
+            this.stallWatchdog.start();
+            this.phaseTimings.setWatchdog(this.stallWatchdog);
+        }
 
-            if (jarFile.getEntry("plugin.yml") == null) continue;
+        this.reclamationPolicy = ReclamationPolicy.parse(this.getConfig().getString("reclamation-policy"), ReclamationPolicy.PLATFORM);
 
-            InputStream stream;
-            try {
-                stream = jarFile.getInputStream(jarFile.getEntry("plugin.yml"));
-            } catch (IOException e) {
-                e.printStackTrace();
-                continue;
-            }
+        if (this.getConfig().getBoolean("leak-tracker.enabled", false)) {
+            this.leakTracker = new LeakTracker(this, this.getConfig().getLong("leak-tracker.gc-cycles", 3));
+            this.leakTracker.start(60);
+        }
 
-            if (stream == null) continue;
+        this.pluginJarIndex = new PluginJarIndex(new File("plugins"), new File(this.getDataFolder(), "jar-index.yml"));
+        this.pluginJarIndex.load();
+        long scanStart = System.nanoTime();
+        int scanned = this.pluginJarIndex.refresh(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8)));
+        this.pluginJarIndex.save();
+        this.getLogger().info("Indexed " + this.pluginJarIndex.getEntries().size() + " plugin jars (" + scanned + " changed) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scanStart) + "ms");
 
-            PluginDescriptionFile descriptionFile = null;
-            try {
-                descriptionFile = new PluginDescriptionFile(stream);
-            } catch (InvalidDescriptionException e) {
-                e.printStackTrace();
-                continue;
-            }
+        for (PluginJarEntry entry : this.pluginJarIndex.getEntries())
+            this.pluginFileStore.put(entry.getFileName(), entry.getHash(), entry.getName());
 
-            this.filePluginMap.put(file.getName(), descriptionFile.getName());
-        }
+        // Plugins enabling after PlugMan register their commands later, index once the server finished starting
+        Bukkit.getScheduler().runTask(this, () -> this.commandIndex.build(PluginUtil.getKnownCommands()));
+
+        this.pluginInventory.update();
+        Bukkit.getPluginManager().registerEvents(this.pluginInventory, this);
+        this.registerGauges();
+        this.startMetricsExport();
 
         this.notifyOnBrokenCommandRemoval = this.getConfig().getBoolean("notify-on-broken-command-removal", true);
 
-        boolean alerted = false;
+        boolean autoLoad = this.getConfig().getBoolean("auto-load.enabled", false);
+        boolean autoUnload = this.getConfig().getBoolean("auto-unload.enabled", false);
+        boolean autoReload = this.getConfig().getBoolean("auto-reload.enabled", false);
 
-        if (this.getConfig().getBoolean("auto-load.enabled", false)) {
+        if (autoLoad || autoUnload || autoReload) {
             Bukkit.getLogger().warning("!!! The auto (re/un)load feature can break plugins, use with caution !!!");
             Bukkit.getLogger().warning("If anything breaks, a restart will probably fix it!");
-            alerted = true;
-            Bukkit.getScheduler().scheduleAsyncRepeatingTask(this, () -> {
-                if (!new File("plugins").isDirectory()) return;
-                for (File file : Arrays.stream(new File("plugins").listFiles()).filter(File::isFile).filter(file -> file.getName().toLowerCase(Locale.ROOT).endsWith(".jar")).collect(Collectors.toList()))
-                    if (!this.fileHashMap.containsKey(file.getName())) {
-                        Bukkit.getScheduler().runTask(this, () -> {
-                            Bukkit.getConsoleSender().sendMessage(PluginUtil.load(file.getName().replace(".jar", "")));
-                        });
-                        String hash = null;
-                        try {
-                            hash = Files.asByteSource(file).hash(Hashing.md5()).toString();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                        this.fileHashMap.put(file.getName(), hash);
-                    }
-            }, this.getConfig().getLong("auto-load.check-every-seconds") * 20, this.getConfig().getLong("auto-load.check-every-seconds") * 20);
+            this.pluginFileWatcher = new PluginFileWatcher(this, new File("plugins"), autoLoad, autoUnload, autoReload);
+            this.pluginFileWatcher.start(this.getConfig().getLong("file-watcher.reconcile-every-seconds", 300), this.getConfig().getLong("file-watcher.settle-millis", 2000));
         }
+    }
 
-        if (this.getConfig().getBoolean("auto-unload.enabled", false)) {
-            if (!alerted) {
-                Bukkit.getLogger().warning("!!! The auto (re/un)load feature can break plugins, use with caution !!!");
-                Bukkit.getLogger().warning("If anything breaks, a restart will probably fix it!");
-                alerted = true;
-            }
-            Bukkit.getScheduler().scheduleAsyncRepeatingTask(this, () -> {
-                if (!new File("plugins").isDirectory()) return;
-                for (String fileName : this.fileHashMap.keySet())
-                    if (!new File("plugins", fileName).exists()) {
-                        Plugin plugin = Bukkit.getPluginManager().getPlugin(this.filePluginMap.get(fileName));
-                        if (plugin == null) {
-                            this.fileHashMap.remove(fileName);
-                            this.filePluginMap.remove(fileName);
-                            continue;
-                        }
-                        if (PluginUtil.isIgnored(plugin)) continue;
-                        this.fileHashMap.remove(fileName);
-                        Bukkit.getScheduler().runTask(this, () -> {
-                            Bukkit.getConsoleSender().sendMessage(PluginUtil.unload(plugin));
-                        });
-                    }
-            }, this.getConfig().getLong("auto-unload.check-every-seconds") * 20, this.getConfig().getLong("auto-unload.check-every-seconds") * 20);
+    @Override
+    public void onDisable() {
+        if (this.pluginFileWatcher != null) {
+            this.pluginFileWatcher.stop();
+            this.pluginFileWatcher = null;
         }
 
-        if (this.getConfig().getBoolean("auto-reload.enabled", false)) {
-            if (!alerted) {
-                Bukkit.getLogger().warning("!!! The auto (re/un)load feature can break plugins, use with caution !!!");
-                Bukkit.getLogger().warning("If anything breaks, a restart will probably fix it!");
-                alerted = true;
-            }
-            Bukkit.getScheduler().scheduleAsyncRepeatingTask(this, () -> {
-                if (!new File("plugins").isDirectory()) return;
-                for (File file : Arrays.stream(new File("plugins").listFiles()).filter(File::isFile).filter(file -> file.getName().toLowerCase(Locale.ROOT).endsWith(".jar")).collect(Collectors.toList())) {
-                    if (!this.fileHashMap.containsKey(file.getName())) continue;
-                    String hash = null;
-                    try {
-                        hash = Files.asByteSource(file).hash(Hashing.md5()).toString();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        continue;
-                    }
-
-                    if (!hash.equalsIgnoreCase(this.fileHashMap.get(file.getName()))) {
-                        Plugin plugin = Bukkit.getPluginManager().getPlugin(this.filePluginMap.get(file.getName()));
-                        if (plugin == null) {
-                            this.fileHashMap.remove(file.getName());
-                            this.filePluginMap.remove(file.getName());
-                            continue;
-                        }
-
-                        if (PluginUtil.isIgnored(plugin)) continue;
+        if (this.pluginJarIndex != null) this.pluginJarIndex.save();
 
-                        this.fileHashMap.remove(file.getName());
-                        this.fileHashMap.put(file.getName(), hash);
-
-                        Bukkit.getScheduler().runTask(this, () -> {
-                            Bukkit.getConsoleSender().sendMessage(PluginUtil.unload(plugin));
-                            Bukkit.getConsoleSender().sendMessage(PluginUtil.load(plugin.getName()));
-                        });
-                    }
-                }
-            }, this.getConfig().getLong("auto-reload.check-every-seconds") * 20, this.getConfig().getLong("auto-reload.check-every-seconds") * 20);
+        if (this.operationScheduler != null) this.operationScheduler.shutdown();
+        this.listenerProfiler.stop();
+        this.taskProfiler.stop();
+        this.cpuSampler.stop();
+        if (this.leakTracker != null) this.leakTracker.stop();
+        if (this.stallWatchdog != null) {
+            this.phaseTimings.setWatchdog(null);
+            this.stallWatchdog.stop();
         }
-    }
+        if (this.commandSyncCoalescer != null) this.commandSyncCoalescer.cancel();
+        if (this.playerCommandRefresher != null) this.playerCommandRefresher.cancel();
+
+        if (this.prometheusTask != null) this.prometheusTask.cancel();
+        if (this.plugManMetrics != null) this.plugManMetrics.unregister();
 
-    @Override
-    public void onDisable() {
         PlugMan.instance = null;
         this.messageFormatter = null;
         this.ignoredPlugins = null;
@@ -483,11 +565,165 @@ public class PlugMan extends JavaPlugin {
         return this.bukkitCommandWrap;
     }
 
+    /**
+     * Returns the coalescer that batches command tree syncs.
+     *
+     * @return the command sync coalescer
+     */
+    public CommandSyncCoalescer getCommandSyncCoalescer() {
+        return this.commandSyncCoalescer;
+    }
+
+    /**
+     * Returns the scheduler that sends updated command trees to players.
+     *
+     * @return the player command refresher
+     */
+    public PlayerCommandRefresher getPlayerCommandRefresher() {
+        return this.playerCommandRefresher;
+    }
+
+    /**
+     * Returns the scheduler that spreads bulk operations over several ticks.
+     *
+     * @return the operation scheduler
+     */
+    public OperationScheduler getOperationScheduler() {
+        return this.operationScheduler;
+    }
+
+    /**
+     * Returns the tracker reporting leaked class loaders of unloaded plugins.
+     *
+     * @return the leak tracker, or null if it is disabled
+     */
+    public LeakTracker getLeakTracker() {
+        return this.leakTracker;
+    }
+
+    /**
+     * Returns when to force a garbage collection after unloading plugins.
+     *
+     * @return the reclamation policy
+     */
+    public ReclamationPolicy getReclamationPolicy() {
+        return this.reclamationPolicy;
+    }
+
     public HashMap<String, Map.Entry<Long, Boolean>> getResourceMap() {
         return this.resourceMap;
     }
 
+    /**
+     * Returns the store of all known plugin jars.
+     *
+     * @return the plugin file store
+     */
+    public PluginFileStore getPluginFileStore() {
+        return this.pluginFileStore;
+    }
+
+    /**
+     * Returns the plugin name of every known jar by file name.
+     *
+     * @return a snapshot of the plugin file store, changes to it are not written back
+     * @deprecated use {@link #getPluginFileStore()}
+     */
+    @Deprecated
     public HashMap<String, String> getFilePluginMap() {
-        return this.filePluginMap;
+        HashMap<String, String> filePluginMap = new HashMap<>();
+        for (PluginFileState state : this.pluginFileStore.snapshot().values())
+            if (state.getPluginName() != null) filePluginMap.put(state.getFileName(), state.getPluginName());
+        return filePluginMap;
+    }
+
+    /**
+     * Returns the index of all jars inside the plugins directory.
+     *
+     * @return the plugin jar index
+     */
+    public PluginJarIndex getPluginJarIndex() {
+        return this.pluginJarIndex;
+    }
+
+    /**
+     * Returns the index of which plugin owns which registered command.
+     *
+     * @return the command index
+     */
+    public CommandIndex getCommandIndex() {
+        return this.commandIndex;
+    }
+
+    /**
+     * Returns the profiler measuring what event listeners cost.
+     *
+     * @return the listener profiler
+     */
+    public ListenerProfiler getListenerProfiler() {
+        return this.listenerProfiler;
+    }
+
+    /**
+     * Returns the profiler measuring what scheduler tasks cost.
+     *
+     * @return the task profiler
+     */
+    public TaskProfiler getTaskProfiler() {
+        return this.taskProfiler;
+    }
+
+    /**
+     * Returns the sampler of the main thread.
+     *
+     * @return the cpu sampler
+     */
+    public CpuSampler getCpuSampler() {
+        return this.cpuSampler;
+    }
+
+    /**
+     * Returns the profiler of the server boot.
+     *
+     * @return the startup profiler, null if disabled
+     */
+    public StartupProfiler getStartupProfiler() {
+        return this.startupProfiler;
+    }
+
+    /**
+     * Returns the counters, latency histograms and gauges of everything PlugMan does.
+     *
+     * @return the metrics registry
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return this.metricsRegistry;
+    }
+
+    /**
+     * Returns how long the phases of plugin operations take.
+     *
+     * @return the phase timings
+     */
+    public PhaseTimings getPhaseTimings() {
+        return this.phaseTimings;
+    }
+
+    /**
+     * Returns the server internals used to load and unload plugins.
+     *
+     * @return the server accessors
+     */
+    public ServerAccessors getServerAccessors() {
+        return this.serverAccessors;
+    }
+
+    /**
+     * Returns which plugins are loaded and enabled, safe to read from any thread.
+     *
+     * @return the plugin inventory
+     */
+    public PluginInventory getPluginInventory() {
+        return this.pluginInventory;
     }
 }
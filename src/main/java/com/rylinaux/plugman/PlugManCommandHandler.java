@@ -93,6 +93,21 @@ public class PlugManCommandHandler implements CommandExecutor {
             case "check":
                 cmd = new CheckCommand(sender);
                 break;
+            case "cancel":
+                cmd = new CancelCommand(sender);
+                break;
+            case "timings":
+                cmd = new TimingsCommand(sender);
+                break;
+            case "stats":
+                cmd = new StatsCommand(sender);
+                break;
+            case "startup":
+                cmd = new StartupCommand(sender);
+                break;
+            case "profile":
+                cmd = new ProfileCommand(sender);
+                break;
         }
 
         cmd.execute(sender, command, label, args);
@@ -26,21 +26,15 @@ package com.rylinaux.plugman;
  * #L%
  */
 
+import com.rylinaux.plugman.pojo.PluginJarEntry;
+import com.rylinaux.plugman.util.PluginJarIndex;
 import com.rylinaux.plugman.util.PluginUtil;
-import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
-import org.bukkit.plugin.InvalidDescriptionException;
-import org.bukkit.plugin.Plugin;
-import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.util.StringUtil;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
-import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 
 /**
@@ -53,7 +47,7 @@ public class PlugManTabCompleter implements TabCompleter {
     /**
      * Valid command names.
      */
-    private static final String[] COMMANDS = {"check", "disable", "dump", "enable", "help", "info", "list", "load", "lookup", "reload", "restart", "unload", "usage"};
+    private static final String[] COMMANDS = {"cancel", "check", "disable", "dump", "enable", "help", "info", "list", "load", "lookup", "profile", "reload", "restart", "startup", "stats", "timings", "unload", "usage"};
 
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
@@ -72,48 +66,13 @@ public class PlugManTabCompleter implements TabCompleter {
                 List<String> files = new ArrayList<>();
                 String partialPlugin = args[1];
 
-                for (File pluginFile : new File("plugins").listFiles()) {
-                    try {
-                        if (pluginFile.isDirectory()) continue;
-
-                        if (!pluginFile.getName().toLowerCase().endsWith(".jar"))
-                            if (!new File("plugins", pluginFile.getName() + ".jar").exists()) continue;
-
-                        JarFile jarFile = null;
-                        try {
-                            jarFile = new JarFile(pluginFile);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                            continue;
-                        }
-
-                        if (jarFile.getEntry("plugin.yml") == null) continue;
-
-                        InputStream stream;
-                        try {
-                            stream = jarFile.getInputStream(jarFile.getEntry("plugin.yml"));
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                            continue;
-                        }
-
-                        if (stream == null) continue;
-
-                        PluginDescriptionFile descriptionFile = null;
-                        try {
-                            descriptionFile = new PluginDescriptionFile(stream);
-                        } catch (InvalidDescriptionException e) {
-                            e.printStackTrace();
-                            continue;
-                        }
-
-                        files.add(pluginFile.getName().substring(0, pluginFile.getName().length() - ".jar".length()));
-
-                        for (Plugin plugin : Bukkit.getPluginManager().getPlugins())
-                            if (plugin.getName().equalsIgnoreCase(descriptionFile.getName()))
-                                files.remove(pluginFile.getName().substring(0, pluginFile.getName().length() - ".jar".length()));
-                    } catch (Exception ignored) {
-                    }
+                PluginJarIndex pluginJarIndex = PlugMan.getInstance().getPluginJarIndex();
+                pluginJarIndex.refresh();
+
+                for (PluginJarEntry entry : pluginJarIndex.getEntries()) {
+                    if (!entry.isPlugin()) continue;
+                    if (PluginUtil.getPluginByName(entry.getName()) != null) continue;
+                    files.add(entry.getFileName().substring(0, entry.getFileName().length() - ".jar".length()));
                 }
 
                 StringUtil.copyPartialMatches(partialPlugin, files, completions);
@@ -122,6 +81,10 @@ public class PlugManTabCompleter implements TabCompleter {
                 List<String> commands = PluginUtil.getKnownCommands().keySet().stream().filter(s -> !s.toLowerCase().contains(":")).collect(Collectors.toList());
                 commands.remove("/");
                 StringUtil.copyPartialMatches(partialCommand, commands, completions);
+            } else if (args[0].equalsIgnoreCase("profile")) {
+                StringUtil.copyPartialMatches(args[1], Arrays.asList("cpu", "listeners", "tasks"), completions);
+            } else if (args[0].equalsIgnoreCase("timings")) {
+                StringUtil.copyPartialMatches(args[1], Collections.singletonList("reset"), completions);
             } else if (args[0].equalsIgnoreCase("enable")) {
                 String partialPlugin = args[1];
                 List<String> plugins = PluginUtil.getDisabledPluginNames(false);
@@ -27,6 +27,7 @@ package com.rylinaux.plugman.command;
  */
 
 import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.util.PluginBatch;
 import com.rylinaux.plugman.util.PluginUtil;
 
 import org.bukkit.command.Command;
@@ -98,8 +99,7 @@ public class DisableCommand extends AbstractCommand {
 
         if (args[1].equalsIgnoreCase("all") || args[1].equalsIgnoreCase("*")) {
             if (hasPermission("all")) {
-                PluginUtil.disableAll();
-                sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("disable.all"));
+                PlugMan.getInstance().getOperationScheduler().submit(PluginBatch.disable(sender, PluginUtil.getManagedPlugins()));
             } else {
                 sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("error.no-permission"));
             }
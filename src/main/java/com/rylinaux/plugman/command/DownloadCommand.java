@@ -140,7 +140,7 @@ public class DownloadCommand extends AbstractCommand {
 
         String name = file.getName();
         name = name.substring(0, name.length() - 4);
-        sender.sendMessage(PluginUtil.load(name));
+        PluginUtil.loadAsync(name, sender::sendMessage);
     }
 
 }
@@ -29,7 +29,10 @@ package com.rylinaux.plugman.command;
 import com.google.common.base.Joiner;
 
 import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.TaskStats;
 import com.rylinaux.plugman.util.PluginUtil;
+import com.rylinaux.plugman.util.StringUtil;
+import com.rylinaux.plugman.util.TaskProfiler;
 
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -37,6 +40,7 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.plugin.Plugin;
 
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Command that displays information on a plugin.
@@ -123,5 +127,14 @@ public class InfoCommand extends AbstractCommand {
         if (!dependList.isEmpty()) sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "info.depends", Joiner.on(", ").join(dependList)));
         if (!softdependList.isEmpty()) sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "info.softdepends", Joiner.on(", ").join(softdependList)));
 
+        TaskStats tasks = TaskProfiler.snapshot().get(name.toLowerCase(Locale.ROOT));
+        if (tasks != null) sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "info.tasks", tasks.getSyncTasks(), tasks.getAsyncTasks(), tasks.getRunningTasks()));
+
+        TaskStats cost = PlugMan.getInstance().getTaskProfiler().getLastResult(target);
+        if (cost != null && cost.getHistogram().getCount() > 0) {
+            int seconds = PlugMan.getInstance().getTaskProfiler().getLastSeconds();
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "info.task-cost", StringUtil.toMillis(cost.getHistogram().getSum() / seconds), cost.getHistogram().getCount(), seconds));
+        }
+
     }
 }
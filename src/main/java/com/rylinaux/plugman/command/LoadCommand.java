@@ -114,7 +114,7 @@ public class LoadCommand extends AbstractCommand {
             return;
         }
 
-        sender.sendMessage(PluginUtil.load(name));
+        PluginUtil.loadAsync(name, sender::sendMessage);
 
     }
 }
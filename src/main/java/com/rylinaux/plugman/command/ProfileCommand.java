@@ -0,0 +1,237 @@
+package com.rylinaux.plugman.command;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.ListenerStats;
+import com.rylinaux.plugman.pojo.TaskStats;
+import com.rylinaux.plugman.util.CpuSampler;
+import com.rylinaux.plugman.util.LatencyHistogram;
+import com.rylinaux.plugman.util.ListenerProfiler;
+import com.rylinaux.plugman.util.PluginUtil;
+import com.rylinaux.plugman.util.StringUtil;
+import com.rylinaux.plugman.util.TaskProfiler;
+import org.apache.commons.lang.math.NumberUtils;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command that profiles what plugins cost for a limited time.
+ */
+public class ProfileCommand extends AbstractCommand {
+
+    /**
+     * The name of the command.
+     */
+    public static final String NAME = "Profile";
+
+    /**
+     * The description of the command.
+     */
+    public static final String DESCRIPTION = "Profile what the listeners, tasks or main thread time of plugins cost.";
+
+    /**
+     * The main permission of the command.
+     */
+    public static final String PERMISSION = "plugman.profile";
+
+    /**
+     * The proper usage of the command.
+     */
+    public static final String USAGE = "/plugman profile <listeners [seconds] [plugin]|tasks [seconds]|cpu [seconds]>";
+
+    /**
+     * The sub permissions of the command.
+     */
+    public static final String[] SUB_PERMISSIONS = {""};
+
+    /**
+     * How long to profile if no duration is given, in seconds.
+     */
+    private static final int DEFAULT_SECONDS = 30;
+
+    /**
+     * The longest allowed duration, in seconds.
+     */
+    private static final int MAX_SECONDS = 600;
+
+    /**
+     * The time between two samples of the main thread, in milliseconds.
+     */
+    private static final long SAMPLE_INTERVAL = 10L;
+
+    /**
+     * How many of the most expensive entries are shown.
+     */
+    private static final int SHOWN = 15;
+
+    /**
+     * Construct out object.
+     *
+     * @param sender the command sender
+     */
+    public ProfileCommand(CommandSender sender) {
+        super(sender, NAME, DESCRIPTION, PERMISSION, SUB_PERMISSIONS, USAGE);
+    }
+
+    /**
+     * Execute the command.
+     *
+     * @param sender  the sender of the command
+     * @param command the command being done
+     * @param label   the name of the command
+     * @param args    the arguments supplied
+     */
+    @Override
+    public void execute(CommandSender sender, Command command, String label, String[] args) {
+
+        if (!hasPermission()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("error.no-permission"));
+            return;
+        }
+
+        String mode = args.length < 2 ? "" : args[1].toLowerCase(Locale.ROOT);
+        if (!mode.equals("listeners") && !mode.equals("tasks") && !mode.equals("cpu")) {
+            sendUsage();
+            return;
+        }
+
+        int seconds = DEFAULT_SECONDS;
+        if (args.length > 2) {
+            seconds = NumberUtils.toInt(args[2], -1);
+            if (seconds < 1 || seconds > MAX_SECONDS) {
+                sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.invalid-seconds", MAX_SECONDS));
+                return;
+            }
+        }
+
+        if (mode.equals("tasks")) {
+            this.profileTasks(sender, seconds);
+            return;
+        }
+
+        if (mode.equals("cpu")) {
+            this.profileCpu(sender, seconds);
+            return;
+        }
+
+        Plugin target = null;
+        if (args.length > 3) {
+            target = PluginUtil.getPluginByName(args, 3);
+            if (target == null) {
+                sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("error.invalid-plugin"));
+                return;
+            }
+        }
+
+        this.profileListeners(sender, target, seconds);
+
+    }
+
+    private void profileListeners(CommandSender sender, Plugin target, int seconds) {
+        ListenerProfiler listenerProfiler = PlugMan.getInstance().getListenerProfiler();
+
+        int profiled = listenerProfiler.start(target, seconds, results -> ProfileCommand.sendListenerResults(sender, seconds, results));
+        if (profiled < 0) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.already-running"));
+            return;
+        }
+
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.listeners.started", profiled, seconds));
+    }
+
+    private void profileTasks(CommandSender sender, int seconds) {
+        TaskProfiler taskProfiler = PlugMan.getInstance().getTaskProfiler();
+
+        int profiled = taskProfiler.start(seconds, results -> ProfileCommand.sendTaskResults(sender, seconds, results));
+        if (profiled < 0) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.already-running"));
+            return;
+        }
+
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.tasks.started", profiled, seconds));
+    }
+
+    private void profileCpu(CommandSender sender, int seconds) {
+        CpuSampler cpuSampler = PlugMan.getInstance().getCpuSampler();
+
+        if (!cpuSampler.start(seconds, SAMPLE_INTERVAL, result -> ProfileCommand.sendCpuResults(sender, seconds, result))) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.already-running"));
+            return;
+        }
+
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.cpu.started", seconds, SAMPLE_INTERVAL));
+    }
+
+    private static void sendCpuResults(CommandSender sender, int seconds, CpuSampler.Result result) {
+        if (result.getSamples() == 0) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.cpu.none"));
+            return;
+        }
+
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.cpu.header", result.getSamples(), seconds));
+        int shown = 0;
+        for (Map.Entry<String, Integer> entry : result.getSamplesByOwner().entrySet()) {
+            if (shown++ == SHOWN) break;
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "profile.cpu.entry", entry.getKey(),
+                    String.format(Locale.ROOT, "%.1f", entry.getValue() * 100.0 / result.getSamples()), entry.getValue()));
+        }
+
+        if (result.getCollapsedStacks() != null)
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "profile.cpu.file", result.getCollapsedStacks().getPath()));
+    }
+
+    private static void sendTaskResults(CommandSender sender, int seconds, List<TaskStats> results) {
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.tasks.header", seconds));
+        for (TaskStats stats : results.subList(0, Math.min(SHOWN, results.size()))) {
+            LatencyHistogram histogram = stats.getHistogram();
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "profile.tasks.entry", stats.getPluginName(), stats.getSyncTasks(), stats.getAsyncTasks(),
+                    histogram.getCount(), StringUtil.toMillis(histogram.getSum() / seconds, 3), StringUtil.toMillis(histogram.getMax(), 3)));
+        }
+    }
+
+    private static void sendListenerResults(CommandSender sender, int seconds, List<ListenerStats> results) {
+        if (results.isEmpty()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.listeners.none"));
+            return;
+        }
+
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("profile.listeners.header", seconds));
+        for (ListenerStats stats : results.subList(0, Math.min(SHOWN, results.size()))) {
+            LatencyHistogram histogram = stats.getHistogram();
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "profile.listeners.entry", stats.getPluginName(), stats.getEventName(), histogram.getCount(),
+                    StringUtil.toMillis(histogram.getSum(), 3), StringUtil.toMillis(histogram.getQuantile(0.5), 3), StringUtil.toMillis(histogram.getQuantile(0.99), 3),
+                    stats.getAllocatedBytes() / 1024));
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ package com.rylinaux.plugman.command;
  */
 
 import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.util.PluginBatch;
 import com.rylinaux.plugman.util.PluginUtil;
 
 import org.bukkit.command.Command;
@@ -98,8 +99,7 @@ public class ReloadCommand extends AbstractCommand {
 
         if (args[1].equalsIgnoreCase("all") || args[1].equalsIgnoreCase("*")) {
             if (hasPermission("all")) {
-                PluginUtil.reloadAll();
-                sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("reload.all"));
+                PlugMan.getInstance().getOperationScheduler().submit(PluginBatch.reload(sender, PluginUtil.getManagedPlugins()));
             } else {
                 sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("error.no-permission"));
             }
@@ -0,0 +1,165 @@
+package com.rylinaux.plugman.command;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.StartupRecord;
+import com.rylinaux.plugman.util.StartupProfiler;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command that shows the slowest plugins of the last server boot and which got slower than usual.
+ */
+public class StartupCommand extends AbstractCommand {
+
+    /**
+     * The name of the command.
+     */
+    public static final String NAME = "Startup";
+
+    /**
+     * The description of the command.
+     */
+    public static final String DESCRIPTION = "Show which plugins slowed down the last server start.";
+
+    /**
+     * The main permission of the command.
+     */
+    public static final String PERMISSION = "plugman.startup";
+
+    /**
+     * The proper usage of the command.
+     */
+    public static final String USAGE = "/plugman startup";
+
+    /**
+     * The sub permissions of the command.
+     */
+    public static final String[] SUB_PERMISSIONS = {""};
+
+    /**
+     * How many of the slowest plugins are shown.
+     */
+    private static final int SLOWEST = 10;
+
+    /**
+     * How much slower than usual a plugin must be to be reported, in milliseconds.
+     */
+    private static final long REGRESSION_MILLIS = 250;
+
+    /**
+     * How much slower than usual a plugin must be to be reported, relative to its usual time.
+     */
+    private static final double REGRESSION_FACTOR = 1.25;
+
+    /**
+     * Construct out object.
+     *
+     * @param sender the command sender
+     */
+    public StartupCommand(CommandSender sender) {
+        super(sender, NAME, DESCRIPTION, PERMISSION, SUB_PERMISSIONS, USAGE);
+    }
+
+    /**
+     * Execute the command.
+     *
+     * @param sender  the sender of the command
+     * @param command the command being done
+     * @param label   the name of the command
+     * @param args    the arguments supplied
+     */
+    @Override
+    public void execute(CommandSender sender, Command command, String label, String[] args) {
+
+        if (!hasPermission()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("error.no-permission"));
+            return;
+        }
+
+        StartupProfiler startupProfiler = PlugMan.getInstance().getStartupProfiler();
+        List<StartupRecord> history = startupProfiler == null ? new ArrayList<>() : startupProfiler.getHistory();
+        if (history.isEmpty()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("startup.no-data"));
+            return;
+        }
+
+        StartupRecord last = history.get(history.size() - 1);
+        List<StartupRecord> previous = history.subList(0, history.size() - 1);
+
+        if (previous.isEmpty()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("startup.header", StartupCommand.toSeconds(last.getBootMillis()), last.getEnableMillis().size()));
+        } else {
+            List<Long> boots = new ArrayList<>();
+            for (StartupRecord record : previous) boots.add(record.getBootMillis());
+            boots.sort(null);
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("startup.header-compared", StartupCommand.toSeconds(last.getBootMillis()), last.getEnableMillis().size(),
+                    previous.size(), StartupCommand.toSeconds(boots.get(boots.size() / 2))));
+        }
+
+        List<Map.Entry<String, Long>> slowest = new ArrayList<>(last.getEnableMillis().entrySet());
+        slowest.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        for (Map.Entry<String, Long> entry : slowest.subList(0, Math.min(SLOWEST, slowest.size()))) {
+            long usual = StartupProfiler.getMedianEnableMillis(previous, entry.getKey());
+            if (usual < 0)
+                sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "startup.entry", entry.getKey(), entry.getValue()));
+            else
+                sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "startup.entry-compared", entry.getKey(), entry.getValue(), usual));
+        }
+
+        if (previous.isEmpty()) return;
+
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : slowest) {
+            long usual = StartupProfiler.getMedianEnableMillis(previous, entry.getKey());
+            if (usual < 0) continue;
+            if (entry.getValue() - usual < REGRESSION_MILLIS || entry.getValue() < usual * REGRESSION_FACTOR) continue;
+            regressions.add(PlugMan.getInstance().getMessageFormatter().format(false, "startup.regression", entry.getKey(), entry.getValue(), entry.getValue() - usual));
+        }
+
+        if (regressions.isEmpty()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("startup.no-regressions"));
+            return;
+        }
+
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("startup.regressions"));
+        for (String line : regressions) sender.sendMessage(line);
+
+    }
+
+    private static String toSeconds(long millis) {
+        return String.format(Locale.ROOT, "%.1f", millis / 1000.0);
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.rylinaux.plugman.command;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.util.LatencyHistogram;
+import com.rylinaux.plugman.util.MetricsRegistry;
+import com.rylinaux.plugman.util.StringUtil;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Command that shows the counters, latencies and gauges PlugMan collected.
+ */
+public class StatsCommand extends AbstractCommand {
+
+    /**
+     * The name of the command.
+     */
+    public static final String NAME = "Stats";
+
+    /**
+     * The description of the command.
+     */
+    public static final String DESCRIPTION = "Show what PlugMan did since the server started.";
+
+    /**
+     * The main permission of the command.
+     */
+    public static final String PERMISSION = "plugman.stats";
+
+    /**
+     * The proper usage of the command.
+     */
+    public static final String USAGE = "/plugman stats";
+
+    /**
+     * The sub permissions of the command.
+     */
+    public static final String[] SUB_PERMISSIONS = {""};
+
+    /**
+     * Construct out object.
+     *
+     * @param sender the command sender
+     */
+    public StatsCommand(CommandSender sender) {
+        super(sender, NAME, DESCRIPTION, PERMISSION, SUB_PERMISSIONS, USAGE);
+    }
+
+    /**
+     * Execute the command.
+     *
+     * @param sender  the sender of the command
+     * @param command the command being done
+     * @param label   the name of the command
+     * @param args    the arguments supplied
+     */
+    @Override
+    public void execute(CommandSender sender, Command command, String label, String[] args) {
+
+        if (!hasPermission()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("error.no-permission"));
+            return;
+        }
+
+        MetricsRegistry metricsRegistry = PlugMan.getInstance().getMetricsRegistry();
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("stats.header"));
+
+        for (Map.Entry<String, LatencyHistogram> entry : metricsRegistry.getHistograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "stats.latency", entry.getKey(), histogram.getCount(),
+                    StringUtil.toMillis(histogram.getQuantile(0.5)), StringUtil.toMillis(histogram.getQuantile(0.99)), StringUtil.toMillis(histogram.getMax())));
+        }
+
+        Map<String, Long> values = new TreeMap<>(metricsRegistry.getGauges());
+        for (Map.Entry<String, LongAdder> entry : metricsRegistry.getCounters().entrySet())
+            values.put(entry.getKey(), entry.getValue().sum());
+
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "stats.value", entry.getKey(), entry.getValue()));
+
+            // Show the hit ratio right after the misses of every cache
+            if (!entry.getKey().endsWith("-misses") && !entry.getKey().endsWith(".misses")) continue;
+            String prefix = entry.getKey().substring(0, entry.getKey().length() - "misses".length());
+            Long hits = values.get(prefix + "hits");
+            if (hits == null || hits + entry.getValue() == 0) continue;
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "stats.ratio", prefix + "hit-ratio",
+                    String.format(Locale.ROOT, "%.1f", 100.0 * hits / (hits + entry.getValue()))));
+        }
+
+    }
+
+}
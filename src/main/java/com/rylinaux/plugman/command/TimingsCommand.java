@@ -0,0 +1,121 @@
+package com.rylinaux.plugman.command;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.PhaseStats;
+import com.rylinaux.plugman.util.PhaseTimings;
+import com.rylinaux.plugman.util.StringUtil;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Command that shows how long the phases of plugin operations took.
+ */
+public class TimingsCommand extends AbstractCommand {
+
+    /**
+     * The name of the command.
+     */
+    public static final String NAME = "Timings";
+
+    /**
+     * The description of the command.
+     */
+    public static final String DESCRIPTION = "Show how long the phases of plugin operations took.";
+
+    /**
+     * The main permission of the command.
+     */
+    public static final String PERMISSION = "plugman.timings";
+
+    /**
+     * The proper usage of the command.
+     */
+    public static final String USAGE = "/plugman timings [reset]";
+
+    /**
+     * The sub permissions of the command.
+     */
+    public static final String[] SUB_PERMISSIONS = {""};
+
+    /**
+     * Construct out object.
+     *
+     * @param sender the command sender
+     */
+    public TimingsCommand(CommandSender sender) {
+        super(sender, NAME, DESCRIPTION, PERMISSION, SUB_PERMISSIONS, USAGE);
+    }
+
+    /**
+     * Execute the command.
+     *
+     * @param sender  the sender of the command
+     * @param command the command being done
+     * @param label   the name of the command
+     * @param args    the arguments supplied
+     */
+    @Override
+    public void execute(CommandSender sender, Command command, String label, String[] args) {
+
+        if (!hasPermission()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("error.no-permission"));
+            return;
+        }
+
+        PhaseTimings phaseTimings = PlugMan.getInstance().getPhaseTimings();
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            phaseTimings.reset();
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("timings.reset"));
+            return;
+        }
+
+        List<PhaseStats> stats = phaseTimings.getStats();
+        if (stats.isEmpty()) {
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("timings.none"));
+            return;
+        }
+
+        String since = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM).format(new Date(phaseTimings.getSince()));
+        sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("timings.header", since, phaseTimings.isFlightRecorderAvailable() ? "on" : "off"));
+
+        for (PhaseStats phase : stats) {
+            long count = phase.getCount();
+            sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(false, "timings.entry", phase.getOperation() + " " + phase.getPhase(), count,
+                    StringUtil.toMillis(phase.getTotalNanos() / Math.max(1, count)), StringUtil.toMillis(phase.getMaxNanos()),
+                    StringUtil.toMillis(phase.getTotalNanos()), phase.getFailures()));
+        }
+
+    }
+
+}
@@ -30,7 +30,9 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Class that allows reading from a YAML file embedded in the JAR.
@@ -60,6 +62,11 @@ public class MessageFile {
      */
     public MessageFile(File file) {
         this.config = YamlConfiguration.loadConfiguration(file);
+
+        // Messages added in newer versions are missing from existing files, fall back to the bundled ones
+        InputStream defaults = this.getClass().getClassLoader().getResourceAsStream(file.getName());
+        if (defaults != null)
+            this.config.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(defaults, StandardCharsets.UTF_8)));
     }
 
     /**
@@ -0,0 +1,116 @@
+package com.rylinaux.plugman.pojo;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the listeners of one plugin cost for one event while they were profiled.
+ */
+public class ListenerStats {
+
+    /**
+     * The name of the plugin.
+     */
+    private final String pluginName;
+
+    /**
+     * The name of the event.
+     */
+    private final String eventName;
+
+    /**
+     * How long each call took.
+     */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * How many bytes the calls allocated together.
+     */
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /**
+     * Construct the object.
+     *
+     * @param pluginName the name of the plugin.
+     * @param eventName  the name of the event.
+     */
+    public ListenerStats(String pluginName, String eventName) {
+        this.pluginName = pluginName;
+        this.eventName = eventName;
+    }
+
+    /**
+     * Record a call.
+     *
+     * @param nanos          how long the call took, in nanoseconds.
+     * @param allocatedBytes how many bytes the call allocated, negative if unknown.
+     */
+    public void record(long nanos, long allocatedBytes) {
+        this.histogram.record(nanos);
+        if (allocatedBytes > 0) this.allocatedBytes.add(allocatedBytes);
+    }
+
+    /**
+     * Get the name of the plugin.
+     *
+     * @return the name of the plugin.
+     */
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    /**
+     * Get the name of the event.
+     *
+     * @return the name of the event.
+     */
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * Get how long each call took.
+     *
+     * @return the histogram of the calls.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Get how many bytes the calls allocated together.
+     *
+     * @return the allocated bytes.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+}
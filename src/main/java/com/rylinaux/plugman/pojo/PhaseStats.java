@@ -0,0 +1,142 @@
+package com.rylinaux.plugman.pojo;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Aggregated timings of one phase of a plugin operation, e.g. the descriptor parse of a load.
+ */
+public class PhaseStats {
+
+    /**
+     * The operation the phase belongs to.
+     */
+    private final String operation;
+
+    /**
+     * The name of the phase.
+     */
+    private final String phase;
+
+    /**
+     * How often the phase ran.
+     */
+    private long count = 0;
+
+    /**
+     * How often the phase failed.
+     */
+    private long failures = 0;
+
+    /**
+     * How long all runs took together, in nanoseconds.
+     */
+    private long totalNanos = 0;
+
+    /**
+     * How long the slowest run took, in nanoseconds.
+     */
+    private long maxNanos = 0;
+
+    /**
+     * Construct the object.
+     *
+     * @param operation the operation the phase belongs to.
+     * @param phase     the name of the phase.
+     */
+    public PhaseStats(String operation, String phase) {
+        this.operation = operation;
+        this.phase = phase;
+    }
+
+    /**
+     * Record a run of the phase.
+     *
+     * @param nanos   how long the run took, in nanoseconds.
+     * @param success whether the run succeeded.
+     */
+    public synchronized void record(long nanos, boolean success) {
+        this.count++;
+        if (!success) this.failures++;
+        this.totalNanos += nanos;
+        this.maxNanos = Math.max(this.maxNanos, nanos);
+    }
+
+    /**
+     * Get the operation the phase belongs to.
+     *
+     * @return the operation.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get the name of the phase.
+     *
+     * @return the name of the phase.
+     */
+    public String getPhase() {
+        return phase;
+    }
+
+    /**
+     * Get how often the phase ran.
+     *
+     * @return the number of runs.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Get how often the phase failed.
+     *
+     * @return the number of failed runs.
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get how long all runs took together.
+     *
+     * @return the time in nanoseconds.
+     */
+    public synchronized long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Get how long the slowest run took.
+     *
+     * @return the time in nanoseconds.
+     */
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+}
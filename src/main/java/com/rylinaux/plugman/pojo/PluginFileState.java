@@ -0,0 +1,107 @@
+package com.rylinaux.plugman.pojo;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Represents the known state of a jar inside the plugins directory.
+ * <p>
+ * Instances are immutable, every update creates a new state with a higher version.
+ */
+public class PluginFileState {
+
+    /**
+     * The name of the jar file.
+     */
+    private final String fileName;
+
+    /**
+     * The fingerprint of the jar file.
+     */
+    private final String hash;
+
+    /**
+     * The name of the plugin loaded from the jar, null if unknown.
+     */
+    private final String pluginName;
+
+    /**
+     * The version of the store when this state was written.
+     */
+    private final long version;
+
+    /**
+     * Construct the object.
+     *
+     * @param fileName   the name of the jar file.
+     * @param hash       the fingerprint of the jar file.
+     * @param pluginName the name of the plugin loaded from the jar.
+     * @param version    the version of the store when this state was written.
+     */
+    public PluginFileState(String fileName, String hash, String pluginName, long version) {
+        this.fileName = fileName;
+        this.hash = hash;
+        this.pluginName = pluginName;
+        this.version = version;
+    }
+
+    /**
+     * Get the name of the jar file.
+     *
+     * @return the name of the jar file.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Get the fingerprint of the jar file.
+     *
+     * @return the fingerprint.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the name of the plugin loaded from the jar.
+     *
+     * @return the plugin name, or null if unknown.
+     */
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    /**
+     * Get the version of the store when this state was written.
+     *
+     * @return the version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.rylinaux.plugman.pojo;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a cached plugin jar inside the plugins directory.
+ */
+public class PluginJarEntry {
+
+    /**
+     * The name of the jar file.
+     */
+    private final String fileName;
+
+    /**
+     * The size of the jar file when it was indexed.
+     */
+    private final long size;
+
+    /**
+     * The last modification time of the jar file when it was indexed.
+     */
+    private final long lastModified;
+
+    /**
+     * The content hash of the jar file.
+     */
+    private final String hash;
+
+    /**
+     * The plugin name from the plugin.yml, null if the jar is not a plugin.
+     */
+    private final String name;
+
+    /**
+     * The plugin version from the plugin.yml.
+     */
+    private final String version;
+
+    /**
+     * The main class from the plugin.yml.
+     */
+    private final String main;
+
+    /**
+     * The hard dependencies from the plugin.yml.
+     */
+    private final List<String> depend;
+
+    /**
+     * The soft dependencies from the plugin.yml.
+     */
+    private final List<String> softDepend;
+
+    /**
+     * Construct the object.
+     *
+     * @param fileName     the name of the jar file.
+     * @param size         the size of the jar file.
+     * @param lastModified the last modification time of the jar file.
+     * @param hash         the content hash of the jar file.
+     * @param name         the plugin name, or null if the jar is not a plugin.
+     * @param version      the plugin version.
+     * @param main         the main class.
+     * @param depend       the hard dependencies.
+     * @param softDepend   the soft dependencies.
+     */
+    public PluginJarEntry(String fileName, long size, long lastModified, String hash, String name, String version, String main, List<String> depend, List<String> softDepend) {
+        this.fileName = fileName;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = hash;
+        this.name = name;
+        this.version = version;
+        this.main = main;
+        this.depend = depend == null ? Collections.emptyList() : Collections.unmodifiableList(depend);
+        this.softDepend = softDepend == null ? Collections.emptyList() : Collections.unmodifiableList(softDepend);
+    }
+
+    /**
+     * Get the name of the jar file.
+     *
+     * @return the name of the jar file.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Get the size of the jar file when it was indexed.
+     *
+     * @return the size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the last modification time of the jar file when it was indexed.
+     *
+     * @return the last modification time in milliseconds.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the content hash of the jar file.
+     *
+     * @return the content hash.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the plugin name.
+     *
+     * @return the plugin name, or null if the jar is not a plugin.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the plugin version.
+     *
+     * @return the plugin version.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the main class.
+     *
+     * @return the main class.
+     */
+    public String getMain() {
+        return main;
+    }
+
+    /**
+     * Get the hard dependencies.
+     *
+     * @return the hard dependencies.
+     */
+    public List<String> getDepend() {
+        return depend;
+    }
+
+    /**
+     * Get the soft dependencies.
+     *
+     * @return the soft dependencies.
+     */
+    public List<String> getSoftDepend() {
+        return softDepend;
+    }
+
+    /**
+     * Check whether the jar contains a valid plugin.yml.
+     *
+     * @return whether the jar is a plugin.
+     */
+    public boolean isPlugin() {
+        return name != null;
+    }
+
+    /**
+     * Check whether the given file still matches this entry.
+     *
+     * @param size         the current size of the file.
+     * @param lastModified the current last modification time of the file.
+     * @return whether the file is unchanged.
+     */
+    public boolean matches(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.rylinaux.plugman.pojo;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * How long the two steps of a batch operation took for a single plugin, e.g. unload and load for a reload.
+ */
+public class PluginTiming {
+
+    /**
+     * The name of the plugin.
+     */
+    private final String name;
+
+    /**
+     * How long stopping the plugin took, in nanoseconds.
+     */
+    private long stopNanos = 0;
+
+    /**
+     * How long starting the plugin took, in nanoseconds.
+     */
+    private long startNanos = 0;
+
+    /**
+     * Construct the object.
+     *
+     * @param name the name of the plugin.
+     */
+    public PluginTiming(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of the plugin.
+     *
+     * @return the name of the plugin.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get how long stopping the plugin took.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getStopNanos() {
+        return stopNanos;
+    }
+
+    /**
+     * Set how long stopping the plugin took.
+     *
+     * @param stopNanos the time in nanoseconds.
+     */
+    public void setStopNanos(long stopNanos) {
+        this.stopNanos = stopNanos;
+    }
+
+    /**
+     * Get how long starting the plugin took.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Set how long starting the plugin took.
+     *
+     * @param startNanos the time in nanoseconds.
+     */
+    public void setStartNanos(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Get how long both steps took together.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return stopNanos + startNanos;
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.rylinaux.plugman.pojo;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.bukkit.plugin.PluginDescriptionFile;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A plugin jar that was located and verified off the main thread and is ready to be loaded.
+ */
+public class PreparedPlugin {
+
+    /**
+     * The jar file, null if preparing failed.
+     */
+    private final File file;
+
+    /**
+     * The parsed plugin.yml, null if preparing failed.
+     */
+    private final PluginDescriptionFile description;
+
+    /**
+     * The message explaining why preparing failed, null if it succeeded.
+     */
+    private final String error;
+
+    private PreparedPlugin(File file, PluginDescriptionFile description, String error) {
+        this.file = file;
+        this.description = description;
+        this.error = error;
+    }
+
+    /**
+     * Create a successfully prepared plugin.
+     *
+     * @param file        the jar file.
+     * @param description the parsed plugin.yml.
+     * @return the prepared plugin.
+     */
+    public static PreparedPlugin of(File file, PluginDescriptionFile description) {
+        return new PreparedPlugin(file, description, null);
+    }
+
+    /**
+     * Create a plugin that failed to prepare.
+     *
+     * @param error the message explaining why.
+     * @return the prepared plugin.
+     */
+    public static PreparedPlugin failed(String error) {
+        return new PreparedPlugin(null, null, error);
+    }
+
+    /**
+     * Get the jar file.
+     *
+     * @return the jar file, or null if preparing failed.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the parsed plugin.yml.
+     *
+     * @return the description, or null if preparing failed.
+     */
+    public PluginDescriptionFile getDescription() {
+        return description;
+    }
+
+    /**
+     * Get the names of the plugins that have to be enabled before this one can be loaded.
+     *
+     * @return the hard dependencies.
+     */
+    public List<String> getDepend() {
+        return description.getDepend();
+    }
+
+    /**
+     * Get the message explaining why preparing failed.
+     *
+     * @return the message, or null if preparing succeeded.
+     */
+    public String getError() {
+        return error;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.rylinaux.plugman.pojo;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How long a single server boot took and how long every plugin took to enable during it.
+ */
+public class StartupRecord {
+
+    /**
+     * When the boot finished, in milliseconds since the epoch.
+     */
+    private final long time;
+
+    /**
+     * How long the boot took from JVM start to the first tick, in milliseconds.
+     */
+    private final long bootMillis;
+
+    /**
+     * How long every plugin took to enable in milliseconds, in enable order.
+     */
+    private final Map<String, Long> enableMillis;
+
+    /**
+     * Construct the object.
+     *
+     * @param time         when the boot finished, in milliseconds since the epoch.
+     * @param bootMillis   how long the boot took in milliseconds.
+     * @param enableMillis how long every plugin took to enable in milliseconds, in enable order.
+     */
+    public StartupRecord(long time, long bootMillis, Map<String, Long> enableMillis) {
+        this.time = time;
+        this.bootMillis = bootMillis;
+        this.enableMillis = Collections.unmodifiableMap(new LinkedHashMap<>(enableMillis));
+    }
+
+    /**
+     * Get when the boot finished.
+     *
+     * @return the time in milliseconds since the epoch.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Get how long the boot took from JVM start to the first tick.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getBootMillis() {
+        return bootMillis;
+    }
+
+    /**
+     * Get how long every plugin took to enable.
+     *
+     * @return the time in milliseconds by plugin name, in enable order.
+     */
+    public Map<String, Long> getEnableMillis() {
+        return enableMillis;
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.rylinaux.plugman.pojo;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.util.LatencyHistogram;
+
+/**
+ * The scheduler footprint of a single plugin.
+ */
+public class TaskStats {
+
+    /**
+     * The name of the plugin.
+     */
+    private final String pluginName;
+
+    /**
+     * How long each run of a sync task took while profiled.
+     */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * Number of pending sync tasks.
+     */
+    private int syncTasks = 0;
+
+    /**
+     * Number of pending async tasks.
+     */
+    private int asyncTasks = 0;
+
+    /**
+     * Number of async tasks currently running.
+     */
+    private int runningTasks = 0;
+
+    /**
+     * Construct the object.
+     *
+     * @param pluginName the name of the plugin.
+     */
+    public TaskStats(String pluginName) {
+        this.pluginName = pluginName;
+    }
+
+    /**
+     * Count a pending task.
+     *
+     * @param sync whether the task runs on the main thread.
+     */
+    public void addPendingTask(boolean sync) {
+        if (sync) this.syncTasks++;
+        else this.asyncTasks++;
+    }
+
+    /**
+     * Count a running async task.
+     */
+    public void addRunningTask() {
+        this.runningTasks++;
+    }
+
+    /**
+     * Get the name of the plugin.
+     *
+     * @return the name of the plugin.
+     */
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    /**
+     * Get how long each run of a sync task took while profiled.
+     *
+     * @return the histogram of the runs.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Get the number of pending sync tasks.
+     *
+     * @return the number of sync tasks.
+     */
+    public int getSyncTasks() {
+        return syncTasks;
+    }
+
+    /**
+     * Get the number of pending async tasks.
+     *
+     * @return the number of async tasks.
+     */
+    public int getAsyncTasks() {
+        return asyncTasks;
+    }
+
+    /**
+     * Get the number of async tasks currently running.
+     *
+     * @return the number of running tasks.
+     */
+    public int getRunningTasks() {
+        return runningTasks;
+    }
+
+}
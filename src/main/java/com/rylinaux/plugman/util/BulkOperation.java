@@ -0,0 +1,237 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * An operation over many plugins, split into steps that can be spread over several ticks.
+ * <p>
+ * Cancelling only drops the steps that did not start yet. Required steps still run after a cancellation, they
+ * bring plugins an earlier step stopped back up.
+ */
+public class BulkOperation {
+
+    /**
+     * The name shown in progress messages.
+     */
+    private final String name;
+
+    /**
+     * Who started the operation, null for the console without feedback.
+     */
+    private final CommandSender sender;
+
+    /**
+     * Runs before the first step.
+     */
+    private final Runnable onStart;
+
+    /**
+     * Runs after the last step or on cancellation, receives whether the operation was cancelled.
+     */
+    private final Consumer<Boolean> onFinish;
+
+    /**
+     * The steps in the order they run in.
+     */
+    private final List<Runnable> steps = new ArrayList<>();
+
+    /**
+     * The indices of the steps that still run after a cancellation.
+     */
+    private final Set<Integer> requiredSteps = new HashSet<>();
+
+    /**
+     * The index of the next step.
+     */
+    private int position = 0;
+
+    /**
+     * The number of steps that ran.
+     */
+    private int completed = 0;
+
+    /**
+     * Whether the operation was started.
+     */
+    private boolean started = false;
+
+    /**
+     * Whether the operation was finished.
+     */
+    private boolean finished = false;
+
+    /**
+     * Whether the operation was cancelled.
+     */
+    private boolean cancelled = false;
+
+    /**
+     * Construct the object.
+     *
+     * @param name     the name shown in progress messages.
+     * @param sender   who started the operation, null for no feedback.
+     * @param onStart  runs before the first step.
+     * @param onFinish runs after the last step or on cancellation.
+     */
+    public BulkOperation(String name, CommandSender sender, Runnable onStart, Consumer<Boolean> onFinish) {
+        this.name = name;
+        this.sender = sender;
+        this.onStart = onStart;
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * Append a step.
+     *
+     * @param step the step.
+     */
+    public void addStep(Runnable step) {
+        this.steps.add(step);
+    }
+
+    /**
+     * Append a step that still runs if the operation is cancelled before it.
+     *
+     * @param step the step.
+     */
+    public void addRequiredStep(Runnable step) {
+        this.requiredSteps.add(this.steps.size());
+        this.steps.add(step);
+    }
+
+    /**
+     * Run every step right away.
+     */
+    public void runAll() {
+        this.start();
+        while (this.hasNext()) this.runNext();
+        this.finish();
+    }
+
+    /**
+     * Run the start hook if it did not run yet.
+     */
+    public void start() {
+        if (this.started) return;
+        this.started = true;
+        this.onStart.run();
+    }
+
+    /**
+     * Whether there are steps left to run.
+     *
+     * @return whether the operation has another step.
+     */
+    public boolean hasNext() {
+        if (this.cancelled)
+            while (this.position < this.steps.size() && !this.requiredSteps.contains(this.position)) this.position++;
+        return this.position < this.steps.size();
+    }
+
+    /**
+     * Run the next step, a failing step is reported and skipped.
+     */
+    public void runNext() {
+        this.completed++;
+        try {
+            this.steps.get(this.position++).run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Drop every step that did not start yet, except the required ones.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Run the finish hook if it did not run yet.
+     */
+    public void finish() {
+        if (this.finished) return;
+        this.finished = true;
+        this.start();
+        this.onFinish.accept(this.cancelled);
+    }
+
+    /**
+     * Send a message to whoever started the operation.
+     *
+     * @param message the message.
+     */
+    public void sendMessage(String message) {
+        if (this.sender != null) this.sender.sendMessage(message);
+    }
+
+    /**
+     * Get the name shown in progress messages.
+     *
+     * @return the name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the number of steps that already ran.
+     *
+     * @return the number of completed steps.
+     */
+    public int getCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * Get the number of steps.
+     *
+     * @return the number of steps.
+     */
+    public int getTotal() {
+        return this.steps.size();
+    }
+
+    /**
+     * Whether the operation was cancelled.
+     *
+     * @return whether the operation was cancelled.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+}
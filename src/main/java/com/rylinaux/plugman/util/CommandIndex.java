@@ -0,0 +1,325 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.bukkit.command.Command;
+import org.bukkit.command.PluginIdentifiableCommand;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Index of which plugin owns which entry of the server's known commands.
+ * <p>
+ * The index is built once from the known commands and then kept up to date where commands change: loads add
+ * the commands of their plugin, unloads remove them. Lookups are plain hash lookups. Commands registered by
+ * other means, e.g. from code instead of plugin.yml, are picked up by {@link #reconcile(Map)}, which compares
+ * the known commands with the index by identity and only resolves what changed.
+ */
+public class CommandIndex {
+
+    /**
+     * The command object every indexed key was resolved for.
+     */
+    private final Map<String, Command> commandByKey = new HashMap<>();
+
+    /**
+     * The owner name of every indexed key.
+     */
+    private final Map<String, String> ownerByKey = new HashMap<>();
+
+    /**
+     * The indexed keys of every owner by lower case owner name.
+     */
+    private final Map<String, Set<String>> keysByOwner = new HashMap<>();
+
+    /**
+     * The indexed keys by lower case label, a namespaced key is listed under both its full key and its plain label.
+     */
+    private final Map<String, Set<String>> keysByLabel = new HashMap<>();
+
+    /**
+     * Keys whose command belongs to a jar that was already closed.
+     */
+    private final Set<String> brokenKeys = new HashSet<>();
+
+    /**
+     * Whether the index was built.
+     */
+    private boolean built = false;
+
+    /**
+     * Build the index from the known commands, does nothing if it was already built.
+     *
+     * @param knownCommands the server's known commands.
+     */
+    public void build(Map<String, Command> knownCommands) {
+        if (this.built || knownCommands == null) return;
+        this.built = true;
+
+        for (Map.Entry<String, Command> entry : knownCommands.entrySet()) {
+            this.commandByKey.put(entry.getKey(), entry.getValue());
+            this.index(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Check whether the index was built.
+     *
+     * @return whether the index was built.
+     */
+    public boolean isBuilt() {
+        return this.built;
+    }
+
+    /**
+     * Index the commands a freshly enabled plugin declared in its plugin.yml.
+     * <p>
+     * Only the plain and namespaced keys of the declared commands and their aliases are looked up.
+     *
+     * @param plugin        the plugin.
+     * @param knownCommands the server's known commands.
+     */
+    public void add(Plugin plugin, Map<String, Command> knownCommands) {
+        if (!this.built || knownCommands == null) return;
+
+        Map<String, Map<String, Object>> commands = plugin.getDescription().getCommands();
+        if (commands == null) return;
+
+        String prefix = plugin.getDescription().getName().toLowerCase(Locale.ROOT).trim() + ":";
+        for (Map.Entry<String, Map<String, Object>> entry : commands.entrySet()) {
+            List<String> labels = new ArrayList<>();
+            labels.add(entry.getKey());
+
+            Object aliases = entry.getValue() == null ? null : entry.getValue().get("aliases");
+            if (aliases instanceof Collection) for (Object alias : (Collection<?>) aliases) labels.add(String.valueOf(alias));
+            else if (aliases != null) labels.add(String.valueOf(aliases));
+
+            for (String label : labels) {
+                String key = label.toLowerCase(Locale.ROOT).trim();
+                this.update(key, knownCommands);
+                this.update(prefix + key, knownCommands);
+            }
+        }
+    }
+
+    /**
+     * Pick up commands that were registered or removed without going through the index.
+     * <p>
+     * The known commands are compared by identity key by key, so a command replaced under the same key is noticed
+     * too. Only added or replaced entries are resolved.
+     *
+     * @param knownCommands the server's known commands.
+     */
+    public void reconcile(Map<String, Command> knownCommands) {
+        if (!this.built || knownCommands == null) return;
+
+        for (Iterator<Map.Entry<String, Command>> it = this.commandByKey.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Command> entry = it.next();
+            if (knownCommands.get(entry.getKey()) == entry.getValue()) continue;
+            it.remove();
+            this.forget(entry.getKey());
+        }
+
+        for (Map.Entry<String, Command> entry : knownCommands.entrySet()) {
+            if (this.commandByKey.get(entry.getKey()) == entry.getValue()) continue;
+            this.commandByKey.put(entry.getKey(), entry.getValue());
+            this.index(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Get the keys of the known commands a plugin owns.
+     *
+     * @param plugin the plugin.
+     * @return a copy of the keys, including namespaced keys and aliases.
+     */
+    public List<String> getKeys(Plugin plugin) {
+        Set<String> keys = this.keysByOwner.get(plugin.getName().toLowerCase(Locale.ROOT));
+        return keys == null ? new ArrayList<>() : new ArrayList<>(keys);
+    }
+
+    /**
+     * Get every plugin that registered a command under a label.
+     * <p>
+     * The plugin the plain label currently dispatches to comes first, followed by the plugins whose command it
+     * shadows and which are only reachable through their namespaced key.
+     *
+     * @param label the label, a plain command name, alias or namespaced key.
+     * @return the names of the owning plugins.
+     */
+    public List<String> getOwners(String label) {
+        label = label.toLowerCase(Locale.ROOT);
+        Set<String> keys = this.keysByLabel.get(label);
+        if (keys == null) return new ArrayList<>();
+
+        Set<String> owners = new LinkedHashSet<>();
+        String owner = this.ownerByKey.get(label);
+        if (owner != null) owners.add(owner);
+
+        List<String> sortedKeys = new ArrayList<>(keys);
+        Collections.sort(sortedKeys);
+        for (String key : sortedKeys) owners.add(this.ownerByKey.get(key));
+        return new ArrayList<>(owners);
+    }
+
+    /**
+     * Get the keys of commands belonging to a jar that was already closed.
+     *
+     * @return a copy of the keys.
+     */
+    public List<String> getBrokenKeys() {
+        return new ArrayList<>(this.brokenKeys);
+    }
+
+    /**
+     * Forget every key a plugin owns, e.g. after it was unloaded.
+     *
+     * @param plugin the plugin.
+     */
+    public void remove(Plugin plugin) {
+        Set<String> keys = this.keysByOwner.remove(plugin.getName().toLowerCase(Locale.ROOT));
+        if (keys == null) return;
+        for (String key : keys) {
+            this.commandByKey.remove(key);
+            this.ownerByKey.remove(key);
+            this.forgetLabels(key);
+        }
+    }
+
+    /**
+     * Forget a single key.
+     *
+     * @param key the key of the known command.
+     */
+    public void remove(String key) {
+        this.commandByKey.remove(key);
+        this.forget(key);
+    }
+
+    private void update(String key, Map<String, Command> knownCommands) {
+        Command command = knownCommands.get(key);
+        if (command == null) {
+            if (this.commandByKey.containsKey(key)) this.remove(key);
+            return;
+        }
+
+        if (this.commandByKey.get(key) == command) return;
+        this.commandByKey.put(key, command);
+        this.index(key, command);
+    }
+
+    private void index(String key, Command command) {
+        this.forget(key);
+
+        String owner;
+        try {
+            owner = CommandIndex.resolveOwner(key, command);
+        } catch (IllegalStateException e) {
+            if (!"zip file closed".equalsIgnoreCase(e.getMessage())) throw e;
+            this.brokenKeys.add(key);
+            return;
+        }
+
+        if (owner == null) return;
+
+        this.ownerByKey.put(key, owner);
+        this.keysByOwner.computeIfAbsent(owner.toLowerCase(Locale.ROOT), k -> new HashSet<>()).add(key);
+        for (String label : CommandIndex.getLabels(key))
+            this.keysByLabel.computeIfAbsent(label, k -> new HashSet<>()).add(key);
+    }
+
+    private void forget(String key) {
+        this.brokenKeys.remove(key);
+
+        String owner = this.ownerByKey.remove(key);
+        if (owner == null) return;
+
+        this.forgetLabels(key);
+
+        Set<String> keys = this.keysByOwner.get(owner.toLowerCase(Locale.ROOT));
+        if (keys == null) return;
+        keys.remove(key);
+        if (keys.isEmpty()) this.keysByOwner.remove(owner.toLowerCase(Locale.ROOT));
+    }
+
+    private void forgetLabels(String key) {
+        for (String label : CommandIndex.getLabels(key)) {
+            Set<String> keys = this.keysByLabel.get(label);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) this.keysByLabel.remove(label);
+        }
+    }
+
+    /**
+     * Get the labels a key of the known commands can be looked up by.
+     *
+     * @param key the key of the known command.
+     * @return the lower case labels.
+     */
+    private static String[] getLabels(String key) {
+        String lowerKey = key.toLowerCase(Locale.ROOT);
+        int separator = lowerKey.indexOf(':');
+        if (separator == -1) return new String[]{lowerKey};
+        return new String[]{lowerKey, lowerKey.substring(separator + 1)};
+    }
+
+    /**
+     * Work out which plugin registered a command.
+     *
+     * @param key     the key of the known command.
+     * @param command the command.
+     * @return the name of the owning plugin, or null if it does not belong to a plugin.
+     */
+    private static String resolveOwner(String key, Command command) {
+        if (command instanceof PluginIdentifiableCommand) {
+            Plugin plugin = ((PluginIdentifiableCommand) command).getPlugin();
+            if (plugin != null) return plugin.getName();
+        }
+
+        if (key.contains(":")) return key.split(":")[0];
+
+        Plugin plugin = PluginUtil.getPluginByClassLoader(command.getClass().getClassLoader());
+        if (plugin != null) return plugin.getName();
+
+        for (Field field : command.getClass().getDeclaredFields()) {
+            if (!Plugin.class.isAssignableFrom(field.getType())) continue;
+            try {
+                field.setAccessible(true);
+                Plugin owningPlugin = (Plugin) field.get(command);
+                if (owningPlugin != null) return owningPlugin.getName();
+            } catch (IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects command tree changes across (re/un)loads and applies them with a single sync.
+ * <p>
+ * Loads queue their plugin's commands for wrapping and unloads mark the tree dirty; one flush later wraps
+ * everything queued, syncs the server's command tree once and queues every online player for one refresh. While a
+ * batch is open nothing is flushed, so a batch of any size costs exactly one sync.
+ */
+public class CommandSyncCoalescer {
+
+    /**
+     * How long to wait before flushing, in ticks. Gives freshly enabled plugins time to register their commands.
+     */
+    private static final long FLUSH_DELAY = 10L;
+
+    /**
+     * The plugin owning the flush task.
+     */
+    private final Plugin plugin;
+
+    /**
+     * The command wrap used to (un)register commands with Brigadier.
+     */
+    private final BukkitCommandWrap commandWrap;
+
+    /**
+     * Sends the synced command tree to online players.
+     */
+    private final PlayerCommandRefresher playerRefresher;
+
+    /**
+     * The plugins whose commands still have to be wrapped.
+     */
+    private final Set<Plugin> pendingWraps = new LinkedHashSet<>();
+
+    /**
+     * Whether the command tree changed since the last flush.
+     */
+    private boolean dirty = false;
+
+    /**
+     * The number of currently open batches.
+     */
+    private int batchDepth = 0;
+
+    /**
+     * The scheduled flush, null if none is scheduled.
+     */
+    private BukkitTask flushTask = null;
+
+    /**
+     * The number of flushes that synced the command tree.
+     */
+    private volatile long syncCount = 0;
+
+    /**
+     * Construct the object.
+     *
+     * @param plugin          the plugin owning the flush task.
+     * @param commandWrap     the command wrap used to (un)register commands with Brigadier.
+     * @param playerRefresher sends the synced command tree to online players.
+     */
+    public CommandSyncCoalescer(Plugin plugin, BukkitCommandWrap commandWrap, PlayerCommandRefresher playerRefresher) {
+        this.plugin = plugin;
+        this.commandWrap = commandWrap;
+        this.playerRefresher = playerRefresher;
+    }
+
+    /**
+     * Queue the commands of a freshly loaded plugin for wrapping.
+     *
+     * @param target the plugin.
+     */
+    public void wrapLater(Plugin target) {
+        this.pendingWraps.add(target);
+        this.markDirty();
+    }
+
+    /**
+     * Drop a plugin from the wrap queue, e.g. because it is being unloaded again.
+     *
+     * @param target the plugin.
+     */
+    public void cancelWrap(Plugin target) {
+        this.pendingWraps.remove(target);
+    }
+
+    /**
+     * Record that the command tree changed.
+     */
+    public void markDirty() {
+        this.dirty = true;
+        this.schedule();
+    }
+
+    /**
+     * Open a batch, nothing is flushed until every open batch was ended.
+     */
+    public void beginBatch() {
+        this.batchDepth++;
+    }
+
+    /**
+     * End a batch and schedule a flush if anything changed during it.
+     */
+    public void endBatch() {
+        if (this.batchDepth > 0) this.batchDepth--;
+        this.schedule();
+    }
+
+    /**
+     * Get the number of flushes that synced the command tree.
+     *
+     * @return the number of syncs.
+     */
+    public long getSyncCount() {
+        return this.syncCount;
+    }
+
+    /**
+     * Cancel a scheduled flush without applying it.
+     */
+    public void cancel() {
+        if (this.flushTask != null) this.flushTask.cancel();
+        this.flushTask = null;
+        this.pendingWraps.clear();
+        this.dirty = false;
+    }
+
+    /**
+     * Wrap all queued commands, sync the command tree and queue every online player for a refresh.
+     */
+    public void flush() {
+        if (this.flushTask != null) this.flushTask.cancel();
+        this.flushTask = null;
+
+        if (!this.dirty) return;
+        this.dirty = false;
+
+        List<Plugin> wraps = new ArrayList<>(this.pendingWraps);
+        this.pendingWraps.clear();
+
+        PhaseTimer timer = PlugMan.getInstance().getPhaseTimings().begin("commands", null);
+
+        if (!wraps.isEmpty()) {
+            timer.phase("wrap");
+            Map<String, Command> knownCommands = PluginUtil.getKnownCommands();
+            // Plugins may register commands from code after they were enabled
+            PlugMan.getInstance().getCommandIndex().reconcile(knownCommands);
+            if (knownCommands != null) for (Plugin target : wraps) {
+                if (!target.isEnabled()) continue;
+                for (String alias : PluginUtil.getCommandKeys(target)) {
+                    Command command = knownCommands.get(alias);
+                    if (command != null) this.commandWrap.wrap(command, alias);
+                }
+            }
+        }
+
+        timer.phase("sync");
+        this.commandWrap.sync();
+        this.syncCount++;
+        timer.done();
+
+        this.playerRefresher.refreshAll();
+    }
+
+    private void schedule() {
+        if (this.batchDepth > 0 || !this.dirty || this.flushTask != null) return;
+        if (!this.plugin.isEnabled()) return;
+        this.flushTask = Bukkit.getScheduler().runTaskLater(this.plugin, this::flush, FLUSH_DELAY);
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Samples the stack of the main thread and attributes every sample to a plugin.
+ * <p>
+ * A sample belongs to the plugin owning the top most frame whose class was loaded by that plugin's class loader,
+ * found through the classes the loaders already hold. Classes loaded after sampling started fall back to the
+ * package of the plugin's main class, whatever the thread state, so a plugin blocking the main thread on a lock or
+ * a future is blamed for it. Samples without plugin frames belong to the server, unless every server frame is
+ * the tick loop waiting for the next tick, those are counted as idle. All samples are also written as collapsed
+ * stacks for flame graph tools.
+ */
+public class CpuSampler {
+
+    /**
+     * Who idle samples are attributed to.
+     */
+    public static final String IDLE = "(idle)";
+
+    /**
+     * Who samples without plugin frames are attributed to.
+     */
+    public static final String SERVER = "(server)";
+
+    /**
+     * Simple names of the server classes running the tick loop, on Spigot and Mojang mappings.
+     */
+    private static final Set<String> TICK_LOOP_CLASSES = new HashSet<>(Arrays.asList("MinecraftServer", "DedicatedServer",
+            "IAsyncTaskHandler", "IAsyncTaskHandlerReentrant", "BlockableEventLoop", "ReentrantBlockableEventLoop"));
+
+    /**
+     * The instance of PlugMan.
+     */
+    private final PlugMan plugMan;
+
+    /**
+     * The thread taking samples, null if not sampling.
+     */
+    private volatile Thread samplerThread = null;
+
+    /**
+     * Construct the object.
+     *
+     * @param plugMan the instance of PlugMan.
+     */
+    public CpuSampler(PlugMan plugMan) {
+        this.plugMan = plugMan;
+    }
+
+    /**
+     * Start sampling the main thread, must be called on the main thread.
+     *
+     * @param seconds        how long to sample.
+     * @param intervalMillis the time between two samples.
+     * @param callback       receives the results on the main thread.
+     * @return whether sampling started, false if already sampling.
+     */
+    public synchronized boolean start(int seconds, long intervalMillis, Consumer<Result> callback) {
+        if (this.isRunning()) return false;
+
+        Thread mainThread = Thread.currentThread();
+        Map<String, String> owners = CpuSampler.indexPluginClasses();
+        Map<String, String> packages = new LinkedHashMap<>();
+        for (Plugin plugin : Bukkit.getPluginManager().getPlugins()) {
+            String main = plugin.getDescription().getMain();
+            int lastDot = main.lastIndexOf('.');
+            if (lastDot > 0) packages.put(main.substring(0, lastDot + 1), plugin.getName());
+        }
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread thread = new Thread(() -> {
+            Result result = this.sample(mainThread, owners, packages, deadline, Math.max(1, intervalMillis));
+            synchronized (this) {
+                this.samplerThread = null;
+            }
+            if (this.plugMan.isEnabled()) Bukkit.getScheduler().runTask(this.plugMan, () -> callback.accept(result));
+        }, "PlugMan CPU Sampler");
+        thread.setDaemon(true);
+        this.samplerThread = thread;
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Stop sampling early, the results so far are still reported.
+     */
+    public synchronized void stop() {
+        if (this.samplerThread != null) this.samplerThread.interrupt();
+    }
+
+    /**
+     * Check whether the main thread is being sampled.
+     *
+     * @return whether sampling is running.
+     */
+    public boolean isRunning() {
+        return this.samplerThread != null;
+    }
+
+    private Result sample(Thread mainThread, Map<String, String> owners, Map<String, String> packages, long deadline, long intervalMillis) {
+        Map<String, Integer> samplesByOwner = new HashMap<>();
+        Map<String, Integer> stacks = new HashMap<>();
+        int total = 0;
+
+        while (System.nanoTime() < deadline && mainThread.isAlive()) {
+            Thread.State state = mainThread.getState();
+            StackTraceElement[] stack = mainThread.getStackTrace();
+
+            if (stack.length > 0) {
+                String owner = CpuSampler.findOwner(stack, owners, packages);
+                if (owner.equals(SERVER) && state != Thread.State.RUNNABLE && CpuSampler.isWaitingForTick(stack)) owner = IDLE;
+                samplesByOwner.merge(owner, 1, Integer::sum);
+                stacks.merge(CpuSampler.collapse(stack), 1, Integer::sum);
+                total++;
+            }
+
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        File file = null;
+        if (total > 0) try {
+            File directory = new File(this.plugMan.getDataFolder(), "profiles");
+            Files.createDirectories(directory.toPath());
+            file = new File(directory, "cpu-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".collapsed");
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Integer> entry : stacks.entrySet())
+                    writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+            }
+        } catch (IOException e) {
+            this.plugMan.getLogger().log(Level.WARNING, "Could not write the collapsed stacks", e);
+            file = null;
+        }
+
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(samplesByOwner.entrySet());
+        sorted.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        Map<String, Integer> ranked = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : sorted) ranked.put(entry.getKey(), entry.getValue());
+
+        return new Result(total, ranked, file);
+    }
+
+    private static String findOwner(StackTraceElement[] stack, Map<String, String> owners, Map<String, String> packages) {
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            String owner = owners.get(className);
+            if (owner == null) {
+                owner = "";
+                for (Map.Entry<String, String> entry : packages.entrySet())
+                    if (className.startsWith(entry.getKey())) {
+                        owner = entry.getValue();
+                        break;
+                    }
+                owners.put(className, owner);
+            }
+            if (!owner.isEmpty()) return owner;
+        }
+        return SERVER;
+    }
+
+    /**
+     * Check whether every frame outside the JDK belongs to the tick loop, i.e. the server waits for the next tick
+     * rather than for something a tick is doing.
+     */
+    private static boolean isWaitingForTick(StackTraceElement[] stack) {
+        boolean inLoop = false;
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.")) continue;
+
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            int nested = simpleName.indexOf('$');
+            if (nested != -1) simpleName = simpleName.substring(0, nested);
+            if (!TICK_LOOP_CLASSES.contains(simpleName)) return false;
+            inLoop = true;
+        }
+        return inLoop;
+    }
+
+    private static String collapse(StackTraceElement[] stack) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = stack.length - 1; i >= 0; i--) {
+            if (builder.length() > 0) builder.append(';');
+            builder.append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Map the name of every class held by a plugin class loader to the name of its plugin.
+     */
+    private static Map<String, String> indexPluginClasses() {
+        Map<String, String> owners = new HashMap<>();
+        ServerAccessors accessors = PlugMan.getInstance().getServerAccessors();
+        if (!accessors.canListPluginClasses()) return owners;
+
+        for (Plugin plugin : Bukkit.getPluginManager().getPlugins())
+            try {
+                for (String className : accessors.getPluginClasses(plugin.getClass().getClassLoader()).keySet())
+                    owners.put(className, plugin.getName());
+            } catch (Exception ignored) {
+                // Not loaded by a plugin class loader, the package fallback still applies
+            }
+        return owners;
+    }
+
+    /**
+     * The outcome of a sampling run.
+     */
+    public static class Result {
+
+        private final int samples;
+        private final Map<String, Integer> samplesByOwner;
+        private final File collapsedStacks;
+
+        private Result(int samples, Map<String, Integer> samplesByOwner, File collapsedStacks) {
+            this.samples = samples;
+            this.samplesByOwner = samplesByOwner;
+            this.collapsedStacks = collapsedStacks;
+        }
+
+        /**
+         * Get the number of samples taken.
+         *
+         * @return the number of samples.
+         */
+        public int getSamples() {
+            return samples;
+        }
+
+        /**
+         * Get the number of samples of every plugin, {@link #SERVER} and {@link #IDLE}.
+         *
+         * @return the samples by owner, most samples first.
+         */
+        public Map<String, Integer> getSamplesByOwner() {
+            return samplesByOwner;
+        }
+
+        /**
+         * Get the file the collapsed stacks were written to.
+         *
+         * @return the file, or null if nothing was written.
+         */
+        public File getCollapsedStacks() {
+            return collapsedStacks;
+        }
+
+    }
+
+}
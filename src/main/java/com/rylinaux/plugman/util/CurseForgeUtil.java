@@ -1,8 +1,6 @@
 package com.rylinaux.plugman.util;
 
-import com.google.common.hash.HashCode;
-import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
+import com.rylinaux.plugman.PlugMan;
 import com.rylinaux.plugman.pojo.UpdateResult;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpResponse;
@@ -110,14 +108,13 @@ public class CurseForgeUtil {
             }
         }
         String latestVersion = (String) latest.get("md5");
-        HashCode currentPluginHashCode;
+        String currentPluginHash;
 
         try {
             Method getFileMethod = JavaPlugin.class.getDeclaredMethod("getFile");
             getFileMethod.setAccessible(true);
             File file = (File) getFileMethod.invoke(plugin);
-            currentPluginHashCode = Files.asByteSource(file).hash(Hashing.md5());
-            currentPluginHashCode.toString();
+            currentPluginHash = JarFingerprint.getMd5(file);
         } catch (IOException | InvocationTargetException | NoSuchMethodException | IllegalAccessException e) {
             e.printStackTrace();
             return new UpdateResult(UpdateResult.ResultType.INVALID_PLUGIN, currentVersion, latestVersion);
@@ -127,8 +124,14 @@ public class CurseForgeUtil {
             return new UpdateResult(UpdateResult.ResultType.INVALID_PLUGIN, currentVersion, latestVersion);
         }
 
+        boolean isLatestFile = latestVersion.equalsIgnoreCase(currentPluginHash);
         latestVersion = (String) latest.get("name");
 
+        // The installed jar is the latest file, whatever its version string says
+        if (isLatestFile) {
+            return new UpdateResult(UpdateResult.ResultType.UP_TO_DATE, currentVersion, latestVersion);
+        }
+
         if (currentVersion == null) {
             return new UpdateResult(UpdateResult.ResultType.NOT_INSTALLED, currentVersion, latestVersion);
         } else if (latestVersion == null) {
@@ -159,8 +162,10 @@ public class CurseForgeUtil {
 
         try {
 
+            long start = System.nanoTime();
             HttpResponse response = client.execute(get);
             String body = IOUtils.toString(response.getEntity().getContent());
+            PlugMan.getInstance().getMetricsRegistry().histogram("update.curseforge").record(System.nanoTime() - start);
 
             Object object = JSONValue.parse(body);
 
@@ -180,6 +185,7 @@ public class CurseForgeUtil {
 
         } catch (IOException e) {
             e.printStackTrace();
+            PlugMan.getInstance().getMetricsRegistry().counter("update.curseforge.failed").increment();
         }
 
         return -1;
@@ -201,13 +207,16 @@ public class CurseForgeUtil {
 
         try {
 
+            long start = System.nanoTime();
             HttpResponse response = client.execute(get);
             String body = IOUtils.toString(response.getEntity().getContent());
+            PlugMan.getInstance().getMetricsRegistry().histogram("update.curseforge").record(System.nanoTime() - start);
 
             return (JSONArray) JSONValue.parse(body);
 
         } catch (IOException e) {
             e.printStackTrace();
+            PlugMan.getInstance().getMetricsRegistry().counter("update.curseforge.failed").increment();
         }
 
         return null;
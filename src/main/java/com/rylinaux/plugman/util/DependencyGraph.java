@@ -0,0 +1,176 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+
+import java.util.*;
+
+/**
+ * The depend, softdepend and loadbefore relations between a set of plugins.
+ * <p>
+ * Only relations between plugins of the set are considered, names a plugin provides count as its own. Plugins without a relation between them keep the
+ * order they were given in, and plugins caught in a dependency cycle are appended in that order as well.
+ */
+public class DependencyGraph {
+
+    /**
+     * The plugins in the order they were given in.
+     */
+    private final List<Plugin> plugins;
+
+    /**
+     * The plugins that have to be loaded before each plugin, by index.
+     */
+    private final List<Set<Integer>> dependencies = new ArrayList<>();
+
+    /**
+     * The plugins in load order.
+     */
+    private final List<Plugin> loadOrder = new ArrayList<>();
+
+    /**
+     * The plugins whose order could not be resolved because of a cycle.
+     */
+    private final List<Plugin> cyclic = new ArrayList<>();
+
+    /**
+     * Construct the graph.
+     *
+     * @param plugins the plugins.
+     */
+    public DependencyGraph(Collection<Plugin> plugins) {
+        this.plugins = new ArrayList<>(plugins);
+
+        Map<String, Integer> indexByName = new HashMap<>();
+        for (int i = 0; i < this.plugins.size(); i++) {
+            indexByName.put(this.plugins.get(i).getName().toLowerCase(Locale.ROOT), i);
+            this.dependencies.add(new HashSet<>());
+        }
+
+        // A real plugin name always wins over a name another plugin provides
+        for (int i = 0; i < this.plugins.size(); i++)
+            for (String name : DependencyGraph.getProvides(this.plugins.get(i).getDescription()))
+                indexByName.putIfAbsent(name.toLowerCase(Locale.ROOT), i);
+
+        for (int i = 0; i < this.plugins.size(); i++) {
+            PluginDescriptionFile description = this.plugins.get(i).getDescription();
+
+            for (String name : DependencyGraph.concat(description.getDepend(), description.getSoftDepend())) {
+                Integer dependency = indexByName.get(name.toLowerCase(Locale.ROOT));
+                if (dependency != null && dependency != i) this.dependencies.get(i).add(dependency);
+            }
+
+            for (String name : DependencyGraph.concat(description.getLoadBefore(), null)) {
+                Integer dependent = indexByName.get(name.toLowerCase(Locale.ROOT));
+                if (dependent != null && dependent != i) this.dependencies.get(dependent).add(i);
+            }
+        }
+
+        this.sort();
+    }
+
+    /**
+     * Get the plugins in the order they have to be loaded or enabled in, dependencies first.
+     *
+     * @return the load order.
+     */
+    public List<Plugin> getLoadOrder() {
+        return new ArrayList<>(this.loadOrder);
+    }
+
+    /**
+     * Get the plugins in the order they have to be unloaded or disabled in, dependents first.
+     *
+     * @return the unload order.
+     */
+    public List<Plugin> getUnloadOrder() {
+        List<Plugin> unloadOrder = new ArrayList<>(this.loadOrder);
+        Collections.reverse(unloadOrder);
+        return unloadOrder;
+    }
+
+    /**
+     * Get the plugins whose order could not be resolved because of a dependency cycle.
+     *
+     * @return the plugins caught in a cycle.
+     */
+    public List<Plugin> getCyclic() {
+        return new ArrayList<>(this.cyclic);
+    }
+
+    /**
+     * Topologically sort the plugins, preferring the given order whenever several plugins are ready.
+     */
+    private void sort() {
+        int size = this.plugins.size();
+        int[] remaining = new int[size];
+        List<List<Integer>> dependents = new ArrayList<>();
+        for (int i = 0; i < size; i++) dependents.add(new ArrayList<>());
+
+        for (int i = 0; i < size; i++) {
+            remaining[i] = this.dependencies.get(i).size();
+            for (int dependency : this.dependencies.get(i)) dependents.get(dependency).add(i);
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < size; i++) if (remaining[i] == 0) ready.add(i);
+
+        boolean[] sorted = new boolean[size];
+        while (!ready.isEmpty()) {
+            int next = ready.poll();
+            sorted[next] = true;
+            this.loadOrder.add(this.plugins.get(next));
+            for (int dependent : dependents.get(next)) if (--remaining[dependent] == 0) ready.add(dependent);
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (sorted[i]) continue;
+            this.cyclic.add(this.plugins.get(i));
+            this.loadOrder.add(this.plugins.get(i));
+        }
+    }
+
+    private static List<String> getProvides(PluginDescriptionFile description) {
+        try {
+            List<String> provides = description.getProvides();
+            return provides == null ? Collections.emptyList() : provides;
+        } catch (NoSuchMethodError e) {
+            // Servers before provides was added
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> names = new ArrayList<>();
+        if (first != null) names.addAll(first);
+        if (second != null) names.addAll(second);
+        return names;
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Stages changed jars until they are completely written.
+ * <p>
+ * Bursts of file events for the same jar are coalesced, and a jar is only passed on once its size and last
+ * modification time stopped changing and its zip central directory could be read. Every settled burst results
+ * in exactly one call to the consumer.
+ */
+public class JarChangePipeline {
+
+    /**
+     * The directory containing the jars.
+     */
+    private final File pluginDirectory;
+
+    /**
+     * How long a jar must stay unchanged before it is passed on, in milliseconds.
+     */
+    private final long settleMillis;
+
+    /**
+     * Called with the file name of every settled jar.
+     */
+    private final Consumer<String> consumer;
+
+    /**
+     * All jars waiting to settle by file name.
+     */
+    private final Map<String, PendingChange> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The id of the settle task.
+     */
+    private int taskId = -1;
+
+    /**
+     * The logger of the plugin owning the settle task.
+     */
+    private Logger logger = Logger.getLogger(JarChangePipeline.class.getName());
+
+    /**
+     * Construct the object.
+     *
+     * @param pluginDirectory the directory containing the jars.
+     * @param settleMillis    how long a jar must stay unchanged before it is passed on.
+     * @param consumer        called with the file name of every settled jar.
+     */
+    public JarChangePipeline(File pluginDirectory, long settleMillis, Consumer<String> consumer) {
+        this.pluginDirectory = pluginDirectory;
+        this.settleMillis = settleMillis;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Start checking staged jars.
+     *
+     * @param plugin      the plugin owning the settle task.
+     * @param periodTicks how often staged jars are checked, in ticks.
+     */
+    public void start(Plugin plugin, long periodTicks) {
+        this.logger = plugin.getLogger();
+        this.taskId = Bukkit.getScheduler().scheduleAsyncRepeatingTask(plugin, this::drain, periodTicks, periodTicks);
+    }
+
+    /**
+     * Stop checking staged jars and drop everything pending.
+     */
+    public void stop() {
+        if (this.taskId != -1) {
+            Bukkit.getScheduler().cancelTask(this.taskId);
+            this.taskId = -1;
+        }
+        this.pending.clear();
+    }
+
+    /**
+     * Stage a jar after a file event.
+     *
+     * @param fileName the name of the jar file.
+     */
+    public void submit(String fileName) {
+        File file = new File(this.pluginDirectory, fileName);
+        this.pending.put(fileName, new PendingChange(file.length(), file.lastModified(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Pass on every staged jar that settled.
+     */
+    private void drain() {
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<String, PendingChange> entry : this.pending.entrySet()) {
+            PendingChange change = entry.getValue();
+            File file = new File(this.pluginDirectory, entry.getKey());
+
+            if (change.observe(file.length(), file.lastModified(), now)) continue;
+            if (now - change.stableSince < this.settleMillis) continue;
+
+            // A newer event replaced this change while it was checked, let that one settle instead
+            if (!this.pending.remove(entry.getKey(), change)) continue;
+
+            if (file.isFile() && !this.isComplete(file)) {
+                this.logger.warning("Possible broken plugin detected, ignoring it until it changes again: " + file.getName());
+                continue;
+            }
+
+            try {
+                this.consumer.accept(entry.getKey());
+            } catch (Exception e) {
+                this.logger.log(Level.WARNING, "Could not handle the change of " + entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Check whether the central directory of a jar can be read.
+     *
+     * @param file the jar file.
+     * @return whether the jar is a complete zip file.
+     */
+    private boolean isComplete(File file) {
+        try (ZipFile ignored = new ZipFile(file)) {
+            return true;
+        } catch (ZipException e) {
+            return false;
+        } catch (IOException e) {
+            this.logger.log(Level.WARNING, "Could not open " + file.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * The last observed state of a staged jar.
+     */
+    private static class PendingChange {
+
+        private long size;
+        private long lastModified;
+        private long stableSince;
+
+        private PendingChange(long size, long lastModified, long now) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.stableSince = now;
+        }
+
+        /**
+         * Record the current state of the jar.
+         *
+         * @return whether the jar changed since it was last observed.
+         */
+        private boolean observe(long size, long lastModified, long now) {
+            if (this.size == size && this.lastModified == lastModified) return false;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.stableSince = now;
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Cheap change detection for jar files.
+ * <p>
+ * The fingerprint of a jar is a CRC32 over its zip central directory, which already holds the CRC, size and
+ * name of every entry, so only a few kilobytes at the end of the file have to be read. Results are cached
+ * and only recomputed when the size or last modification time of a file changes.
+ */
+public class JarFingerprint {
+
+    /**
+     * Signature of the zip end of central directory record.
+     */
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    /**
+     * Size of the end of central directory record without its comment.
+     */
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    /**
+     * Cached fingerprints by absolute path.
+     */
+    private static final Map<String, CachedFingerprint> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Cache statistics.
+     */
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    /**
+     * Get the fingerprint of a jar, only reading the file if it changed since it was last fingerprinted.
+     *
+     * @param file the jar file.
+     * @return the fingerprint.
+     * @throws IOException if the file could not be read.
+     */
+    public static String getFingerprint(File file) throws IOException {
+        CachedFingerprint cached = JarFingerprint.getCached(file);
+        if (cached.fingerprint == null) {
+            JarFingerprint.MISSES.incrementAndGet();
+            cached.fingerprint = JarFingerprint.compute(file);
+        } else {
+            JarFingerprint.HITS.incrementAndGet();
+        }
+        return cached.fingerprint;
+    }
+
+    /**
+     * Get the MD5 hash of a jar, only reading the file if it changed since it was last hashed.
+     * <p>
+     * Only use this where an MD5 is required to compare against a remote source, it reads the whole file.
+     *
+     * @param file the jar file.
+     * @return the MD5 hash.
+     * @throws IOException if the file could not be read.
+     */
+    public static String getMd5(File file) throws IOException {
+        CachedFingerprint cached = JarFingerprint.getCached(file);
+        if (cached.md5 == null) {
+            JarFingerprint.MISSES.incrementAndGet();
+            cached.md5 = Files.asByteSource(file).hash(Hashing.md5()).toString();
+        } else {
+            JarFingerprint.HITS.incrementAndGet();
+        }
+        return cached.md5;
+    }
+
+    /**
+     * Forget the cached fingerprint of a file.
+     *
+     * @param file the jar file.
+     */
+    public static void invalidate(File file) {
+        JarFingerprint.CACHE.remove(file.getAbsolutePath());
+    }
+
+    /**
+     * Get the number of lookups answered from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public static long getHits() {
+        return JarFingerprint.HITS.get();
+    }
+
+    /**
+     * Get the number of lookups that had to read the file.
+     *
+     * @return the number of cache misses.
+     */
+    public static long getMisses() {
+        return JarFingerprint.MISSES.get();
+    }
+
+    private static CachedFingerprint getCached(File file) {
+        long size = file.length();
+        long lastModified = file.lastModified();
+        return JarFingerprint.CACHE.compute(file.getAbsolutePath(), (path, cached) -> {
+            if (cached != null && cached.size == size && cached.lastModified == lastModified) return cached;
+            return new CachedFingerprint(size, lastModified);
+        });
+    }
+
+    /**
+     * Compute the fingerprint of a jar.
+     * <p>
+     * Falls back to a CRC32 over the whole file if the central directory cannot be located, e.g. for zip64.
+     *
+     * @param file the jar file.
+     * @return the fingerprint.
+     * @throws IOException if the file could not be read.
+     */
+    private static String compute(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long length = channel.size();
+            CRC32 crc = new CRC32();
+
+            int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+            ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+            JarFingerprint.readFully(channel, tail, length - tailLength);
+
+            for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) != END_OF_CENTRAL_DIRECTORY) continue;
+
+                long directorySize = tail.getInt(i + 12) & 0xFFFFFFFFL;
+                long directoryOffset = tail.getInt(i + 16) & 0xFFFFFFFFL;
+                if (directoryOffset + directorySize > length - tailLength + i) break;
+
+                ByteBuffer directory = ByteBuffer.allocate((int) directorySize);
+                JarFingerprint.readFully(channel, directory, directoryOffset);
+                directory.flip();
+                crc.update(directory);
+                return "cd-" + Long.toHexString(crc.getValue()) + "-" + Long.toHexString(directorySize);
+            }
+
+            // Not mapped, a mapping would keep the jar locked on Windows until it is garbage collected
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            channel.position(0);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+            return "file-" + Long.toHexString(crc.getValue()) + "-" + Long.toHexString(length);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of file");
+        }
+    }
+
+    /**
+     * Fingerprints of a file at a given size and last modification time.
+     */
+    private static class CachedFingerprint {
+
+        private final long size;
+        private final long lastModified;
+        private volatile String fingerprint;
+        private volatile String md5;
+
+        private CachedFingerprint(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+}
@@ -0,0 +1,439 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicesManager;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the class loaders of unloaded plugins and reports the ones that are never garbage collected.
+ * <p>
+ * Only collections that can unload classes are counted: full, old generation and concurrent mark cycles, not
+ * young collections. A loader that is still reachable after a number of them is reported once, together with the
+ * likely retainers found by a bounded walk over threads, thread locals, services, scheduled tasks and the
+ * static fields of the remaining plugins. The check on the main thread only polls references, the walk runs
+ * asynchronously on a snapshot of the services, tasks and plugins taken on the main thread.
+ */
+public class LeakTracker {
+
+    /**
+     * The maximum number of objects visited by a single retainer search.
+     */
+    private static final int MAX_VISITED = 50000;
+
+    /**
+     * The maximum number of retainers reported per class loader.
+     */
+    private static final int MAX_RETAINERS = 10;
+
+    /**
+     * Collectors that never unload classes: young collections, and pause counters of concurrent collectors
+     * whose cycles are counted by a separate collector.
+     */
+    private static final Set<String> YOUNG_COLLECTORS = new HashSet<>(Arrays.asList("Copy", "PS Scavenge", "ParNew",
+            "G1 Young Generation", "ZGC Minor Cycles", "ZGC Minor Pauses", "ZGC Major Pauses", "ZGC Pauses", "Shenandoah Pauses"));
+
+    /**
+     * Thread#threadLocals, ThreadLocalMap#table and ThreadLocalMap.Entry#value, null if not accessible.
+     */
+    private static final Field THREAD_LOCALS;
+    private static final Field THREAD_LOCAL_TABLE;
+    private static final Field THREAD_LOCAL_VALUE;
+
+    /**
+     * Unsafe#shouldBeInitialized, used to avoid running static initializers while reading static fields.
+     */
+    private static final Object UNSAFE;
+    private static final Method SHOULD_BE_INITIALIZED;
+
+    static {
+        Field threadLocals = null, table = null, value = null;
+        try {
+            threadLocals = Thread.class.getDeclaredField("threadLocals");
+            threadLocals.setAccessible(true);
+            Class<?> mapClass = Class.forName("java.lang.ThreadLocal$ThreadLocalMap");
+            table = mapClass.getDeclaredField("table");
+            table.setAccessible(true);
+            value = Class.forName("java.lang.ThreadLocal$ThreadLocalMap$Entry").getDeclaredField("value");
+            value.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            threadLocals = null;
+        }
+        THREAD_LOCALS = threadLocals;
+        THREAD_LOCAL_TABLE = table;
+        THREAD_LOCAL_VALUE = value;
+
+        Object unsafe = null;
+        Method shouldBeInitialized = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            shouldBeInitialized = unsafeClass.getMethod("shouldBeInitialized", Class.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            shouldBeInitialized = null;
+        }
+        UNSAFE = unsafe;
+        SHOULD_BE_INITIALIZED = shouldBeInitialized;
+    }
+
+    /**
+     * The instance of PlugMan.
+     */
+    private final PlugMan plugMan;
+
+    /**
+     * After how many full or old generation collections a surviving class loader is reported.
+     */
+    private final long gcCycles;
+
+    /**
+     * Receives the references of collected class loaders.
+     */
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+
+    /**
+     * Every tracked class loader that was not collected yet.
+     */
+    private final Set<TrackedLoader> tracked = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * The number of class loaders that were collected.
+     */
+    private volatile long collected = 0;
+
+    /**
+     * The number of class loaders that were reported as leaked.
+     */
+    private volatile long leaked = 0;
+
+    /**
+     * The id of the check task.
+     */
+    private int taskId = -1;
+
+    /**
+     * Construct the object.
+     *
+     * @param plugMan  the instance of PlugMan.
+     * @param gcCycles after how many full or old generation collections a surviving class loader is reported.
+     */
+    public LeakTracker(PlugMan plugMan, long gcCycles) {
+        this.plugMan = plugMan;
+        this.gcCycles = Math.max(1, gcCycles);
+    }
+
+    /**
+     * Start checking tracked class loaders.
+     *
+     * @param periodSeconds how often to check, in seconds.
+     */
+    public void start(long periodSeconds) {
+        long period = Math.max(1, periodSeconds) * 20;
+        this.taskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(this.plugMan, this::check, period, period);
+    }
+
+    /**
+     * Stop checking tracked class loaders.
+     */
+    public void stop() {
+        if (this.taskId != -1) Bukkit.getScheduler().cancelTask(this.taskId);
+        this.taskId = -1;
+    }
+
+    /**
+     * Start tracking the class loader of a plugin that is being unloaded.
+     *
+     * @param pluginName  the name of the plugin.
+     * @param classLoader the class loader.
+     */
+    public void track(String pluginName, ClassLoader classLoader) {
+        if (classLoader == null) return;
+        this.tracked.add(new TrackedLoader(pluginName, classLoader, this.queue, LeakTracker.getCollectionCount()));
+    }
+
+    /**
+     * Get the number of tracked class loaders that were not collected yet.
+     *
+     * @return the number of pending class loaders.
+     */
+    public int getPendingCount() {
+        return this.tracked.size();
+    }
+
+    /**
+     * Get the number of tracked class loaders that were collected.
+     *
+     * @return the number of collected class loaders.
+     */
+    public long getCollectedCount() {
+        return this.collected;
+    }
+
+    /**
+     * Get the number of class loaders that were reported as leaked.
+     *
+     * @return the number of leaked class loaders.
+     */
+    public long getLeakedCount() {
+        return this.leaked;
+    }
+
+    /**
+     * Forget collected class loaders and report the ones that survived too many garbage collections.
+     */
+    public void check() {
+        for (Reference<? extends ClassLoader> reference; (reference = this.queue.poll()) != null; ) {
+            if (this.tracked.remove(reference)) this.collected++;
+        }
+
+        long collections = LeakTracker.getCollectionCount();
+        List<TrackedLoader> snapshot;
+        synchronized (this.tracked) {
+            snapshot = new ArrayList<>(this.tracked);
+        }
+
+        Map<String, ClassLoader> leaking = new LinkedHashMap<>();
+        for (TrackedLoader loader : snapshot) {
+            if (loader.reported || collections - loader.collectionsAtUnload < this.gcCycles) continue;
+
+            ClassLoader classLoader = loader.get();
+            if (classLoader == null) continue;
+
+            loader.reported = true;
+            this.leaked++;
+            leaking.put(loader.pluginName, classLoader);
+
+            long minutes = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - loader.unloadedAt);
+            this.plugMan.getLogger().warning("The class loader of " + loader.pluginName + " is still reachable " + minutes + " minute(s) and "
+                    + (collections - loader.collectionsAtUnload) + " full garbage collections after it was unloaded, it is probably leaking.");
+        }
+        if (leaking.isEmpty()) return;
+
+        // The Bukkit API is only read here, the walk itself may visit thousands of objects
+        List<RegisteredServiceProvider<?>> providers = new ArrayList<>();
+        ServicesManager servicesManager = Bukkit.getServicesManager();
+        for (Class<?> service : servicesManager.getKnownServices())
+            providers.addAll(servicesManager.getRegistrations(service));
+        List<BukkitTask> tasks = new ArrayList<>(Bukkit.getScheduler().getPendingTasks());
+        Plugin[] plugins = Bukkit.getPluginManager().getPlugins().clone();
+
+        Bukkit.getScheduler().runTaskAsynchronously(this.plugMan, () -> {
+            for (Map.Entry<String, ClassLoader> entry : leaking.entrySet()) {
+                List<String> retainers = this.findRetainers(entry.getValue(), providers, tasks, plugins);
+                if (retainers.isEmpty())
+                    this.plugMan.getLogger().warning("No likely retainer of " + entry.getKey() + " found, take a heap dump to find out what is holding on to it.");
+                else for (String retainer : retainers)
+                    this.plugMan.getLogger().warning(" - " + entry.getKey() + " is held by " + retainer);
+            }
+        });
+    }
+
+    /**
+     * Look for likely retainers of a class loader, bounded by {@link #MAX_VISITED} objects.
+     *
+     * @param classLoader the class loader.
+     * @param providers   the registered services, taken on the main thread.
+     * @param tasks       the pending tasks, taken on the main thread.
+     * @param plugins     the loaded plugins, taken on the main thread.
+     * @return descriptions of the likely retainers.
+     */
+    private List<String> findRetainers(ClassLoader classLoader, List<RegisteredServiceProvider<?>> providers, List<BukkitTask> tasks, Plugin[] plugins) {
+        List<String> retainers = new ArrayList<>();
+        int[] budget = {MAX_VISITED};
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (retainers.size() >= MAX_RETAINERS) return retainers;
+            if (thread.getClass().getClassLoader() == classLoader)
+                retainers.add("thread '" + thread.getName() + "'");
+            else if (thread.getContextClassLoader() == classLoader)
+                retainers.add("context class loader of thread '" + thread.getName() + "'");
+            else if (LeakTracker.holdsThreadLocal(thread, classLoader, budget))
+                retainers.add("thread local of thread '" + thread.getName() + "'");
+        }
+
+        for (RegisteredServiceProvider<?> provider : providers) {
+            if (retainers.size() >= MAX_RETAINERS) return retainers;
+            Class<?> service = provider.getService();
+            if (service.getClassLoader() == classLoader || LeakTracker.references(provider.getProvider(), classLoader, budget))
+                retainers.add("service " + service.getName() + " registered by " + provider.getPlugin().getName());
+        }
+
+        for (BukkitTask task : tasks) {
+            if (retainers.size() >= MAX_RETAINERS) return retainers;
+            Plugin owner = task.getOwner();
+            if (owner != null && owner.getClass().getClassLoader() == classLoader)
+                retainers.add("scheduled task #" + task.getTaskId());
+        }
+
+        ServerAccessors accessors = this.plugMan.getServerAccessors();
+        if (SHOULD_BE_INITIALIZED == null || !accessors.canListPluginClasses()) return retainers;
+
+        for (Plugin plugin : plugins) {
+            Collection<Class<?>> classes;
+            try {
+                classes = new ArrayList<>(accessors.getPluginClasses(plugin.getClass().getClassLoader()).values());
+            } catch (Exception e) {
+                continue;
+            }
+
+            for (Class<?> clazz : classes) {
+                if (budget[0] <= 0 || retainers.size() >= MAX_RETAINERS) return retainers;
+                if (clazz.getClassLoader() == classLoader || !LeakTracker.isInitialized(clazz)) continue;
+
+                Field[] fields;
+                try {
+                    fields = clazz.getDeclaredFields();
+                } catch (LinkageError e) {
+                    continue;
+                }
+
+                for (Field field : fields) {
+                    if (!Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) continue;
+                    try {
+                        field.setAccessible(true);
+                        if (LeakTracker.references(field.get(null), classLoader, budget))
+                            retainers.add("static field " + clazz.getName() + "." + field.getName() + " of " + plugin.getName());
+                    } catch (IllegalAccessException | RuntimeException | LinkageError ignored) {
+                    }
+                }
+            }
+        }
+
+        return retainers;
+    }
+
+    /**
+     * Check whether an object, or an element of it if it is a collection, map or array, belongs to a class loader.
+     */
+    private static boolean references(Object value, ClassLoader classLoader, int[] budget) {
+        if (value == null || budget[0]-- <= 0) return false;
+        if (LeakTracker.belongsTo(value, classLoader)) return true;
+
+        Iterable<?> elements = null;
+        if (value instanceof Collection) elements = (Collection<?>) value;
+        else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            try {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (budget[0]-- <= 0) return false;
+                    if (LeakTracker.belongsTo(entry.getKey(), classLoader) || LeakTracker.belongsTo(entry.getValue(), classLoader)) return true;
+                }
+            } catch (RuntimeException ignored) {
+            }
+            return false;
+        } else if (value instanceof Object[]) {
+            int length = Array.getLength(value);
+            for (int i = 0; i < length && budget[0]-- > 0; i++)
+                if (LeakTracker.belongsTo(Array.get(value, i), classLoader)) return true;
+            return false;
+        }
+
+        if (elements != null) try {
+            for (Object element : elements) {
+                if (budget[0]-- <= 0) return false;
+                if (LeakTracker.belongsTo(element, classLoader)) return true;
+            }
+        } catch (RuntimeException ignored) {
+        }
+
+        return false;
+    }
+
+    private static boolean belongsTo(Object value, ClassLoader classLoader) {
+        if (value == null) return false;
+        if (value == classLoader) return true;
+        if (value instanceof Class) return ((Class<?>) value).getClassLoader() == classLoader;
+        return value.getClass().getClassLoader() == classLoader;
+    }
+
+    private static boolean holdsThreadLocal(Thread thread, ClassLoader classLoader, int[] budget) {
+        if (THREAD_LOCALS == null) return false;
+        try {
+            Object map = THREAD_LOCALS.get(thread);
+            if (map == null) return false;
+            Object[] table = (Object[]) THREAD_LOCAL_TABLE.get(map);
+            for (Object entry : table) {
+                if (entry == null) continue;
+                if (LeakTracker.references(THREAD_LOCAL_VALUE.get(entry), classLoader, budget)) return true;
+            }
+        } catch (IllegalAccessException | RuntimeException ignored) {
+        }
+        return false;
+    }
+
+    private static boolean isInitialized(Class<?> clazz) {
+        try {
+            return !(Boolean) SHOULD_BE_INITIALIZED.invoke(UNSAFE, clazz);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static long getCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            if (!YOUNG_COLLECTORS.contains(bean.getName())) count += Math.max(0, bean.getCollectionCount());
+        return count;
+    }
+
+    /**
+     * A weakly referenced class loader of an unloaded plugin.
+     */
+    private static class TrackedLoader extends WeakReference<ClassLoader> {
+
+        private final String pluginName;
+        private final long collectionsAtUnload;
+        private final long unloadedAt = System.currentTimeMillis();
+        private boolean reported = false;
+
+        private TrackedLoader(String pluginName, ClassLoader classLoader, ReferenceQueue<ClassLoader> queue, long collectionsAtUnload) {
+            super(classLoader, queue);
+            this.pluginName = pluginName;
+            this.collectionsAtUnload = collectionsAtUnload;
+        }
+
+    }
+
+}
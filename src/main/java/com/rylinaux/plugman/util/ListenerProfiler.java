@@ -0,0 +1,239 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.ListenerStats;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Measures what the event listeners of plugins cost for a limited time.
+ * <p>
+ * Every profiled {@link RegisteredListener} is swapped for one with a timing executor that calls the original,
+ * and swapped back once profiling ends. Handler lists are rebuilt in their original order both times, so the
+ * order listeners are called in does not change. The time of a listener includes events it fires itself.
+ */
+public class ListenerProfiler {
+
+    /**
+     * The instance of PlugMan.
+     */
+    private final PlugMan plugMan;
+
+    /**
+     * Swapped in listeners and the originals they replace.
+     */
+    private final Map<RegisteredListener, RegisteredListener> originals = new IdentityHashMap<>();
+
+    /**
+     * Collected stats by plugin and event.
+     */
+    private final Map<String, ListenerStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the bytes allocated by a thread, null if the JVM cannot.
+     */
+    private final com.sun.management.ThreadMXBean allocationBean = ListenerProfiler.getAllocationBean();
+
+    /**
+     * Receives the results once profiling ends.
+     */
+    private Consumer<List<ListenerStats>> callback = null;
+
+    /**
+     * The task ending profiling, null if not profiling.
+     */
+    private BukkitTask stopTask = null;
+
+    /**
+     * Construct the object.
+     *
+     * @param plugMan the instance of PlugMan.
+     */
+    public ListenerProfiler(PlugMan plugMan) {
+        this.plugMan = plugMan;
+    }
+
+    /**
+     * Start profiling, must be called on the main thread.
+     *
+     * @param target   the plugin to profile, null for all plugins.
+     * @param seconds  how long to profile.
+     * @param callback receives the results, most expensive first, once profiling ends.
+     * @return the number of profiled listeners, or -1 if already profiling.
+     */
+    public int start(Plugin target, int seconds, Consumer<List<ListenerStats>> callback) {
+        if (this.isRunning()) return -1;
+
+        this.stats.clear();
+        this.callback = callback;
+
+        for (HandlerList handlerList : HandlerList.getHandlerLists()) {
+            RegisteredListener[] listeners = handlerList.getRegisteredListeners();
+            boolean affected = false;
+            for (RegisteredListener listener : listeners)
+                if (target == null || listener.getPlugin() == target) {
+                    affected = true;
+                    break;
+                }
+            if (!affected) continue;
+
+            List<RegisteredListener> replaced = new ArrayList<>();
+            for (RegisteredListener listener : listeners) {
+                if (target != null && listener.getPlugin() != target) {
+                    replaced.add(listener);
+                    continue;
+                }
+                RegisteredListener timed = this.createTimedListener(listener);
+                this.originals.put(timed, listener);
+                replaced.add(timed);
+            }
+            ListenerProfiler.replace(handlerList, listeners, replaced);
+        }
+
+        this.stopTask = Bukkit.getScheduler().runTaskLater(this.plugMan, this::stop, Math.max(1, seconds) * 20L);
+        return this.originals.size();
+    }
+
+    /**
+     * Stop profiling, restore the original listeners and pass the results on.
+     */
+    public void stop() {
+        if (!this.isRunning()) return;
+
+        this.stopTask.cancel();
+        this.stopTask = null;
+
+        for (HandlerList handlerList : HandlerList.getHandlerLists()) {
+            RegisteredListener[] listeners = handlerList.getRegisteredListeners();
+            boolean affected = false;
+            for (RegisteredListener listener : listeners)
+                if (this.originals.containsKey(listener)) {
+                    affected = true;
+                    break;
+                }
+            if (!affected) continue;
+
+            List<RegisteredListener> restored = new ArrayList<>();
+            for (RegisteredListener listener : listeners) {
+                RegisteredListener original = this.originals.get(listener);
+                // Plugins unloaded while profiling lose their listeners for good
+                if (original == null) restored.add(listener);
+                else if (original.getPlugin().isEnabled()) restored.add(original);
+            }
+            ListenerProfiler.replace(handlerList, listeners, restored);
+        }
+        this.originals.clear();
+
+        List<ListenerStats> results = new ArrayList<>(this.stats.values());
+        results.sort(Comparator.comparingLong((ListenerStats stats) -> stats.getHistogram().getSum()).reversed());
+
+        Consumer<List<ListenerStats>> callback = this.callback;
+        this.callback = null;
+        if (callback != null) callback.accept(results);
+    }
+
+    /**
+     * Check whether listeners are being profiled.
+     *
+     * @return whether profiling is running.
+     */
+    public boolean isRunning() {
+        return this.stopTask != null;
+    }
+
+    /**
+     * Check whether the JVM reports allocated bytes per thread.
+     *
+     * @return whether allocations are measured.
+     */
+    public boolean isMeasuringAllocations() {
+        return this.allocationBean != null;
+    }
+
+    private RegisteredListener createTimedListener(RegisteredListener original) {
+        Map<Class<?>, ListenerStats> statsByEvent = new ConcurrentHashMap<>();
+        String pluginName = original.getPlugin().getName();
+
+        // The original still checks whether cancelled events are ignored
+        return new RegisteredListener(original.getListener(), (listener, event) -> {
+            ListenerStats stats = statsByEvent.get(event.getClass());
+            if (stats == null) stats = statsByEvent.computeIfAbsent(event.getClass(), type -> this.getStats(pluginName, event));
+
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = this.allocationBean == null ? 0 : this.allocationBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            try {
+                original.callEvent(event);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                stats.record(nanos, this.allocationBean == null ? -1 : this.allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore);
+            }
+        }, original.getPriority(), original.getPlugin(), false);
+    }
+
+    private ListenerStats getStats(String pluginName, Event event) {
+        String eventName = event.getEventName();
+        return this.stats.computeIfAbsent(pluginName + " " + eventName, key -> new ListenerStats(pluginName, eventName));
+    }
+
+    private static void replace(HandlerList handlerList, RegisteredListener[] current, List<RegisteredListener> replacement) {
+        for (RegisteredListener listener : current) handlerList.unregister(listener);
+        for (RegisteredListener listener : replacement) handlerList.register(listener);
+        handlerList.bake();
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+            if (!allocationBean.isThreadAllocatedMemorySupported()) return null;
+            if (!allocationBean.isThreadAllocatedMemoryEnabled()) allocationBean.setThreadAllocatedMemoryEnabled(true);
+            return allocationBean;
+        } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+}
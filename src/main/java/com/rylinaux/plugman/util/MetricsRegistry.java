@@ -0,0 +1,124 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, latency histograms and gauges describing what PlugMan did since the server started.
+ * <p>
+ * Metrics are created on first use and live forever. Callers on hot paths should keep the returned counter or
+ * histogram instead of looking it up every time, recording into them never allocates.
+ */
+public class MetricsRegistry {
+
+    /**
+     * Counters by name.
+     */
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Latency histograms by name.
+     */
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Gauges by name, read whenever the metrics are reported.
+     */
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Get or create a counter.
+     *
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    public LongAdder counter(String name) {
+        LongAdder counter = this.counters.get(name);
+        return counter != null ? counter : this.counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Get or create a latency histogram.
+     *
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = this.histograms.get(name);
+        return histogram != null ? histogram : this.histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Register a gauge, replacing any gauge of the same name.
+     *
+     * @param name     the name of the gauge.
+     * @param supplier reads the current value.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        this.gauges.put(name, supplier);
+    }
+
+    /**
+     * Get all counters sorted by name.
+     *
+     * @return the counters.
+     */
+    public Map<String, LongAdder> getCounters() {
+        return new TreeMap<>(this.counters);
+    }
+
+    /**
+     * Get all latency histograms sorted by name.
+     *
+     * @return the histograms.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(this.histograms);
+    }
+
+    /**
+     * Read all gauges sorted by name, skipping gauges that fail to read.
+     *
+     * @return the current value of every gauge.
+     */
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> entry : this.gauges.entrySet())
+            try {
+                values.put(entry.getKey(), entry.getValue().getAsLong());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        return values;
+    }
+
+}
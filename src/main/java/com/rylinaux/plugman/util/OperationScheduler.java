@@ -0,0 +1,236 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs bulk operations one after another, spreading their steps over ticks within a time budget.
+ * <p>
+ * Every tick runs at least one step and keeps going while the budget lasts, so a slow plugin still costs a
+ * single long tick but the server never freezes for the whole operation.
+ */
+public class OperationScheduler {
+
+    /**
+     * How often progress is reported, in ticks.
+     */
+    private static final int PROGRESS_INTERVAL = 20;
+
+    /**
+     * The instance of PlugMan.
+     */
+    private final PlugMan plugMan;
+
+    /**
+     * How long steps may run per tick, in nanoseconds.
+     */
+    private final long budgetNanos;
+
+    /**
+     * Operations waiting for the current one to finish.
+     */
+    private final Deque<BulkOperation> queue = new ArrayDeque<>();
+
+    /**
+     * The queue size as of the last change, readable from the metrics exporter thread.
+     */
+    private volatile int queued = 0;
+
+    /**
+     * The running operation, null if none is running.
+     */
+    private BulkOperation current = null;
+
+    /**
+     * The task running the steps, null while idle.
+     */
+    private BukkitTask task = null;
+
+    /**
+     * The number of ticks the current operation has been running.
+     */
+    private int ticks = 0;
+
+    /**
+     * The operation whose step is running right now, null outside of a step, read from other threads.
+     */
+    private volatile BulkOperation running = null;
+
+    /**
+     * The operation to cancel once its running step returns, set from other threads.
+     */
+    private volatile BulkOperation abortRequested = null;
+
+    /**
+     * Construct the object.
+     *
+     * @param plugMan      the instance of PlugMan.
+     * @param budgetMillis how long steps may run per tick, in milliseconds.
+     */
+    public OperationScheduler(PlugMan plugMan, long budgetMillis) {
+        this.plugMan = plugMan;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, budgetMillis));
+    }
+
+    /**
+     * Queue an operation, it starts on the next tick or once the operations before it finished.
+     *
+     * @param operation the operation.
+     */
+    public void submit(BulkOperation operation) {
+        if (this.current != null || !this.queue.isEmpty())
+            operation.sendMessage(this.plugMan.getMessageFormatter().format("operation.queued", operation.getName()));
+
+        this.queue.add(operation);
+        this.queued = this.queue.size();
+        if (this.task == null) this.task = Bukkit.getScheduler().runTaskTimer(this.plugMan, this::tick, 1L, 1L);
+    }
+
+    /**
+     * Get the running operation.
+     *
+     * @return the operation, or null if none is running.
+     */
+    public BulkOperation getCurrent() {
+        return this.current;
+    }
+
+    /**
+     * Get the number of operations waiting for the current one to finish.
+     *
+     * @return the number of queued operations.
+     */
+    public int getQueued() {
+        return this.queued;
+    }
+
+    /**
+     * Cancel the running operation and everything queued after it.
+     * <p>
+     * The running operation still finishes its required steps on the following ticks.
+     *
+     * @return the number of cancelled operations.
+     */
+    public int cancelAll() {
+        int cancelled = 0;
+
+        if (this.current != null && !this.current.isCancelled()) {
+            this.current.cancel();
+            cancelled++;
+        }
+
+        for (BulkOperation operation; (operation = this.queue.poll()) != null; cancelled++)
+            operation.sendMessage(this.plugMan.getMessageFormatter().format("operation.cancelled", operation.getName(), 0, operation.getTotal()));
+        this.queued = 0;
+
+        if (this.current == null) this.stop();
+        return cancelled;
+    }
+
+    /**
+     * Cancel everything and run the required steps of the running operation right away, e.g. when PlugMan is disabled.
+     */
+    public void shutdown() {
+        this.cancelAll();
+        this.stop();
+
+        if (this.current == null) return;
+        while (this.current.hasNext()) this.current.runNext();
+        this.finish();
+    }
+
+    /**
+     * Cancel the running operation and everything queued after it once its running step returns, safe to call
+     * from any thread.
+     * <p>
+     * Does nothing if no step is running, so a stall outside of the scheduler never aborts a bulk operation.
+     */
+    public void requestAbort() {
+        BulkOperation operation = this.running;
+        if (operation != null) this.abortRequested = operation;
+    }
+
+    private void finish() {
+        this.current.finish();
+        if (this.current.isCancelled())
+            this.current.sendMessage(this.plugMan.getMessageFormatter().format("operation.cancelled", this.current.getName(), this.current.getCompleted(), this.current.getTotal()));
+        this.current = null;
+    }
+
+    private void tick() {
+        if (this.current == null) {
+            this.current = this.queue.poll();
+            this.queued = this.queue.size();
+            if (this.current == null) {
+                this.stop();
+                return;
+            }
+            this.ticks = 0;
+            this.current.start();
+        }
+
+        long deadline = System.nanoTime() + this.budgetNanos;
+        while (this.current.hasNext()) {
+            this.running = this.current;
+            try {
+                this.current.runNext();
+            } finally {
+                this.running = null;
+            }
+
+            if (this.abortRequested == this.current) {
+                this.abortRequested = null;
+                // Required steps still bring back up what the operation already stopped
+                this.plugMan.getLogger().warning("Aborted " + this.cancelAll() + " bulk operations after the main thread stalled");
+                break;
+            }
+            if (System.nanoTime() - deadline >= 0) break;
+        }
+
+        if (!this.current.hasNext()) {
+            this.finish();
+            if (this.queue.isEmpty()) this.stop();
+            return;
+        }
+
+        if (++this.ticks % PROGRESS_INTERVAL == 0)
+            this.current.sendMessage(this.plugMan.getMessageFormatter().format("operation.progress", this.current.getName(), this.current.getCompleted(), this.current.getTotal()));
+    }
+
+    private void stop() {
+        if (this.task != null) this.task.cancel();
+        this.task = null;
+    }
+
+}
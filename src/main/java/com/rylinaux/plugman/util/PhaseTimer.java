@@ -0,0 +1,214 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+/**
+ * Times the consecutive phases of a single operation on a plugin.
+ * <p>
+ * Starting a phase ends the previous one as successful. {@link #done()} and {@link #fail()} end the current
+ * phase and the whole operation, only the first of them counts, so callers can end a timer as failed in a
+ * finally block after ending it normally. Phases that are never ended are not recorded.
+ */
+public class PhaseTimer {
+
+    /**
+     * The timings to record into.
+     */
+    private final PhaseTimings timings;
+
+    /**
+     * The operation, e.g. load or unload.
+     */
+    private final String operation;
+
+    /**
+     * The name of the plugin.
+     */
+    private final String pluginName;
+
+    /**
+     * The histogram receiving the duration of the whole operation.
+     */
+    private final LatencyHistogram histogram;
+
+    /**
+     * When the operation started, from {@link System#nanoTime()}.
+     */
+    private final long begin = System.nanoTime();
+
+    /**
+     * The running phase, null if none is running.
+     */
+    private volatile String phase = null;
+
+    /**
+     * When the running phase started, from {@link System#nanoTime()}.
+     */
+    private volatile long start = this.begin;
+
+    /**
+     * The flight recorder event of the running phase, null if not recorded.
+     */
+    private Object event = null;
+
+    /**
+     * The operation this one runs in, as seen by the {@link StallWatchdog}.
+     */
+    private PhaseTimer outer = null;
+
+    /**
+     * Whether the operation was ended.
+     */
+    private boolean ended = false;
+
+    /**
+     * Construct the object.
+     *
+     * @param timings    the timings to record into.
+     * @param operation  the operation.
+     * @param pluginName the name of the plugin.
+     * @param histogram  the histogram receiving the duration of the whole operation.
+     */
+    PhaseTimer(PhaseTimings timings, String operation, String pluginName, LatencyHistogram histogram) {
+        this.timings = timings;
+        this.operation = operation;
+        this.pluginName = pluginName;
+        this.histogram = histogram;
+    }
+
+    /**
+     * End the running phase as successful and start the next one.
+     *
+     * @param phase the name of the next phase.
+     * @return this timer.
+     */
+    public PhaseTimer phase(String phase) {
+        this.end(true);
+        this.phase = phase;
+        this.event = this.timings.startEvent(this.operation, this.pluginName, phase);
+        this.start = System.nanoTime();
+        return this;
+    }
+
+    /**
+     * End the running phase as failed and start the next one, for operations that recover from a failed phase.
+     *
+     * @param phase the name of the next phase.
+     * @return this timer.
+     */
+    public PhaseTimer fallback(String phase) {
+        this.end(false);
+        return this.phase(phase);
+    }
+
+    /**
+     * End the running phase and the operation as successful.
+     */
+    public void done() {
+        if (this.ended) return;
+        this.end(true);
+        this.histogram.record(System.nanoTime() - this.begin);
+        this.ended = true;
+        this.timings.exit(this);
+    }
+
+    /**
+     * End the running phase and the operation as failed.
+     */
+    public void fail() {
+        if (this.ended) return;
+        this.end(false);
+        this.histogram.record(System.nanoTime() - this.begin);
+        this.timings.recordFailure(this.operation);
+        this.ended = true;
+        this.timings.exit(this);
+    }
+
+    /**
+     * Get the operation, e.g. load or unload.
+     *
+     * @return the operation.
+     */
+    public String getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Get the name of the plugin.
+     *
+     * @return the name of the plugin, or * for operations on many plugins.
+     */
+    public String getPluginName() {
+        return this.pluginName;
+    }
+
+    /**
+     * Get the running phase.
+     *
+     * @return the phase, or null if none is running.
+     */
+    public String getPhase() {
+        return this.phase;
+    }
+
+    /**
+     * Get when the operation started.
+     *
+     * @return the time from {@link System#nanoTime()}.
+     */
+    public long getBegin() {
+        return this.begin;
+    }
+
+    /**
+     * Get when the running phase started, or the operation if no phase started yet.
+     *
+     * @return the time from {@link System#nanoTime()}.
+     */
+    public long getPhaseStart() {
+        return this.start;
+    }
+
+    PhaseTimer getOuter() {
+        return this.outer;
+    }
+
+    void setOuter(PhaseTimer outer) {
+        this.outer = outer;
+    }
+
+    private void end(boolean success) {
+        if (this.phase == null) return;
+
+        this.timings.record(this.operation, this.phase, System.nanoTime() - this.start, success);
+        if (this.event != null) PluginPhaseEvent.finish(this.event, success);
+
+        this.phase = null;
+        this.event = null;
+    }
+
+}
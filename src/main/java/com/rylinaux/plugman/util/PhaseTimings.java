@@ -0,0 +1,205 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.pojo.PhaseStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates how long the phases of loading, unloading and reloading plugins take.
+ * <p>
+ * Every phase is also emitted as a {@link PluginPhaseEvent} to the JDK Flight Recorder if the JVM ships it, so
+ * a recording of a production server shows plugin operations next to GC, class loading and lock events. The
+ * duration of every whole operation is recorded into the {@link MetricsRegistry} histogram of the same name.
+ * <p>
+ * Recording a phase allocates nothing once the operation and phase were seen: stats are keyed by the operation
+ * and phase constants themselves and counters are cached.
+ */
+public class PhaseTimings {
+
+    /**
+     * The registry receiving the durations of whole operations.
+     */
+    private final MetricsRegistry metricsRegistry;
+
+    /**
+     * Aggregated timings by operation, then by phase.
+     */
+    private final Map<String, Map<String, PhaseStats>> stats = new ConcurrentHashMap<>();
+
+    /**
+     * The failure counter of every operation.
+     */
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the flight recorder is available, cleared if emitting an event ever fails to link.
+     */
+    private volatile boolean flightRecorder = PhaseTimings.isFlightRecorderPresent();
+
+    /**
+     * When the timings were last reset, in milliseconds since the epoch.
+     */
+    private volatile long since = System.currentTimeMillis();
+
+    /**
+     * The watchdog reporting operations that block the main thread, null if disabled.
+     */
+    private volatile StallWatchdog watchdog = null;
+
+    /**
+     * Construct the object.
+     *
+     * @param metricsRegistry the registry receiving the durations of whole operations.
+     */
+    public PhaseTimings(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Start timing an operation on a plugin.
+     *
+     * @param operation  the operation, e.g. load or unload.
+     * @param pluginName the name of the plugin, or null for operations on many plugins.
+     * @return the timer to mark the phases of the operation with.
+     */
+    public PhaseTimer begin(String operation, String pluginName) {
+        PhaseTimer timer = new PhaseTimer(this, operation, pluginName == null ? "*" : pluginName, this.metricsRegistry.histogram(operation));
+
+        StallWatchdog watchdog = this.watchdog;
+        if (watchdog != null) watchdog.enter(timer);
+        return timer;
+    }
+
+    /**
+     * Set the watchdog reporting operations that block the main thread.
+     *
+     * @param watchdog the watchdog, or null to stop reporting.
+     */
+    public void setWatchdog(StallWatchdog watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Get the aggregated timings, slowest phase first.
+     *
+     * @return the timings of every phase that ran.
+     */
+    public List<PhaseStats> getStats() {
+        List<PhaseStats> sorted = new ArrayList<>();
+        for (Map<String, PhaseStats> phases : this.stats.values()) sorted.addAll(phases.values());
+        sorted.sort(Comparator.comparingLong(PhaseStats::getTotalNanos).reversed());
+        return sorted;
+    }
+
+    /**
+     * Forget all aggregated timings.
+     */
+    public void reset() {
+        this.stats.clear();
+        this.since = System.currentTimeMillis();
+    }
+
+    /**
+     * Get when the timings were last reset.
+     *
+     * @return the time in milliseconds since the epoch.
+     */
+    public long getSince() {
+        return this.since;
+    }
+
+    /**
+     * Check whether phases are emitted to the flight recorder.
+     *
+     * @return whether flight recorder events are available.
+     */
+    public boolean isFlightRecorderAvailable() {
+        return this.flightRecorder;
+    }
+
+    /**
+     * Start a flight recorder event for a phase.
+     *
+     * @return the event, or null if the flight recorder is unavailable or not recording it.
+     */
+    Object startEvent(String operation, String pluginName, String phase) {
+        if (!this.flightRecorder) return null;
+        try {
+            return PluginPhaseEvent.start(operation, pluginName, phase);
+        } catch (LinkageError e) {
+            this.flightRecorder = false;
+            return null;
+        }
+    }
+
+    /**
+     * Record a finished phase.
+     */
+    void record(String operation, String phase, long nanos, boolean success) {
+        Map<String, PhaseStats> phases = this.stats.get(operation);
+        if (phases == null) phases = this.stats.computeIfAbsent(operation, key -> new ConcurrentHashMap<>());
+
+        PhaseStats stats = phases.get(phase);
+        if (stats == null) stats = phases.computeIfAbsent(phase, key -> new PhaseStats(operation, phase));
+        stats.record(nanos, success);
+    }
+
+    /**
+     * Record a failed operation.
+     */
+    void recordFailure(String operation) {
+        LongAdder counter = this.failures.get(operation);
+        if (counter == null)
+            counter = this.failures.computeIfAbsent(operation, key -> this.metricsRegistry.counter(key + ".failed"));
+        counter.increment();
+    }
+
+    /**
+     * Stop watching an ended operation.
+     */
+    void exit(PhaseTimer timer) {
+        StallWatchdog watchdog = this.watchdog;
+        if (watchdog != null) watchdog.exit(timer);
+    }
+
+    private static boolean isFlightRecorderPresent() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+}
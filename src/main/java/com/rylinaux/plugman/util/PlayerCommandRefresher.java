@@ -0,0 +1,133 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sends updated command trees to players, spread over several ticks.
+ * <p>
+ * Players are queued at most once; a player still waiting when the tree changes again simply receives the
+ * newest tree once it is their turn. The refresh task only runs while the queue is not empty.
+ */
+public class PlayerCommandRefresher {
+
+    /**
+     * The plugin owning the refresh task.
+     */
+    private final Plugin plugin;
+
+    /**
+     * The maximum number of players refreshed per tick.
+     */
+    private final int playersPerTick;
+
+    /**
+     * The players waiting for a refresh, in queue order.
+     */
+    private final Set<UUID> queue = new LinkedHashSet<>();
+
+    /**
+     * The queue size as of the last change, readable from the metrics exporter thread.
+     */
+    private volatile int queueDepth = 0;
+
+    /**
+     * The running refresh task, null while the queue is empty.
+     */
+    private BukkitTask task = null;
+
+    /**
+     * Construct the object.
+     *
+     * @param plugin         the plugin owning the refresh task.
+     * @param playersPerTick the maximum number of players refreshed per tick.
+     */
+    public PlayerCommandRefresher(Plugin plugin, int playersPerTick) {
+        this.plugin = plugin;
+        this.playersPerTick = Math.max(1, playersPerTick);
+    }
+
+    /**
+     * Queue every online player for a refresh.
+     */
+    public void refreshAll() {
+        for (Player player : Bukkit.getOnlinePlayers()) this.queue.add(player.getUniqueId());
+        this.queueDepth = this.queue.size();
+        this.schedule();
+    }
+
+    /**
+     * Get the number of players waiting for a refresh.
+     *
+     * @return the queue depth.
+     */
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    /**
+     * Stop refreshing and drop everybody still queued.
+     */
+    public void cancel() {
+        if (this.task != null) this.task.cancel();
+        this.task = null;
+        this.queue.clear();
+        this.queueDepth = 0;
+    }
+
+    private void schedule() {
+        if (this.task != null || this.queue.isEmpty() || !this.plugin.isEnabled()) return;
+        this.task = Bukkit.getScheduler().runTaskTimer(this.plugin, this::tick, 1L, 1L);
+    }
+
+    private void tick() {
+        int refreshed = 0;
+        for (Iterator<UUID> it = this.queue.iterator(); it.hasNext() && refreshed < this.playersPerTick; ) {
+            Player player = Bukkit.getPlayer(it.next());
+            it.remove();
+            if (player == null || !player.isOnline()) continue;
+            player.updateCommands();
+            refreshed++;
+        }
+        this.queueDepth = this.queue.size();
+
+        if (this.queue.isEmpty() && this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+
+}
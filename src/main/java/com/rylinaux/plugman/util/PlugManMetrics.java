@@ -0,0 +1,159 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the metrics PlugMan collected as a platform MBean.
+ * <p>
+ * Only uses the JDK, so the Bukkit and the Bungee side share it.
+ */
+public class PlugManMetrics implements PlugManMetricsMXBean {
+
+    /**
+     * The metrics to publish.
+     */
+    private final MetricsRegistry metricsRegistry;
+
+    /**
+     * Reads every plugin of the server and whether it is enabled.
+     */
+    private final Supplier<Map<String, Boolean>> inventory;
+
+    /**
+     * The name the bean is registered under, null if not registered.
+     */
+    private ObjectName objectName = null;
+
+    /**
+     * Construct the object.
+     *
+     * @param metricsRegistry the metrics to publish.
+     * @param inventory       reads every plugin of the server and whether it is enabled.
+     */
+    public PlugManMetrics(MetricsRegistry metricsRegistry, Supplier<Map<String, Boolean>> inventory) {
+        this.metricsRegistry = metricsRegistry;
+        this.inventory = inventory;
+    }
+
+    /**
+     * Register the bean with the platform MBean server.
+     *
+     * @param platform the platform the bean describes, e.g. bukkit or bungee.
+     * @throws JMException if the bean could not be registered.
+     */
+    public void register(String platform) throws JMException {
+        ObjectName objectName = new ObjectName("com.rylinaux.plugman:type=Metrics,platform=" + platform);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        // A bean left behind by a previous instance of PlugMan that was not disabled cleanly
+        if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+
+        server.registerMBean(this, objectName);
+        this.objectName = objectName;
+    }
+
+    /**
+     * Remove the bean from the platform MBean server.
+     */
+    public void unregister() {
+        if (this.objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        this.objectName = null;
+    }
+
+    /**
+     * Get the metrics this bean publishes.
+     *
+     * @return the metrics registry.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return this.metricsRegistry;
+    }
+
+    @Override
+    public Map<String, Boolean> getPlugins() {
+        return new TreeMap<>(this.inventory.get());
+    }
+
+    @Override
+    public int getPluginCount() {
+        return this.inventory.get().size();
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>(this.metricsRegistry.getGauges());
+        for (Map.Entry<String, LongAdder> entry : this.metricsRegistry.getCounters().entrySet())
+            values.put(entry.getKey(), entry.getValue().sum());
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : this.metricsRegistry.getHistograms().entrySet())
+            counts.put(entry.getKey(), entry.getValue().getCount());
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getOperationMedianMillis() {
+        return this.getOperationMillis(histogram -> histogram.getQuantile(0.5));
+    }
+
+    @Override
+    public Map<String, Double> getOperationP99Millis() {
+        return this.getOperationMillis(histogram -> histogram.getQuantile(0.99));
+    }
+
+    @Override
+    public Map<String, Double> getOperationMaxMillis() {
+        return this.getOperationMillis(LatencyHistogram::getMax);
+    }
+
+    private Map<String, Double> getOperationMillis(ToLongFunction<LatencyHistogram> nanos) {
+        Map<String, Double> millis = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : this.metricsRegistry.getHistograms().entrySet())
+            millis.put(entry.getKey(), nanos.applyAsLong(entry.getValue()) / 1_000_000.0);
+        return millis;
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.Map;
+
+/**
+ * Management interface exposing the plugin inventory and the metrics PlugMan collected.
+ */
+public interface PlugManMetricsMXBean {
+
+    /**
+     * Get every plugin of the server and whether it is enabled.
+     *
+     * @return whether each plugin is enabled by name.
+     */
+    Map<String, Boolean> getPlugins();
+
+    /**
+     * Get the number of plugins of the server.
+     *
+     * @return the number of plugins.
+     */
+    int getPluginCount();
+
+    /**
+     * Get the current value of every counter and gauge.
+     *
+     * @return the values by metric name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Get how often every timed operation ran.
+     *
+     * @return the counts by metric name.
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * Get the median duration of every timed operation.
+     *
+     * @return the durations in milliseconds by metric name.
+     */
+    Map<String, Double> getOperationMedianMillis();
+
+    /**
+     * Get the 99th percentile duration of every timed operation.
+     *
+     * @return the durations in milliseconds by metric name.
+     */
+    Map<String, Double> getOperationP99Millis();
+
+    /**
+     * Get the longest duration of every timed operation.
+     *
+     * @return the durations in milliseconds by metric name.
+     */
+    Map<String, Double> getOperationMaxMillis();
+
+}
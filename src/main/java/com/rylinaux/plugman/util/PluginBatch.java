@@ -0,0 +1,202 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.PluginTiming;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Creates operations over many plugins at once in dependency order.
+ * <p>
+ * Plugins are stopped dependents first and started dependencies first. A reload shares a single command sync
+ * and a single cleanup pass at the end.
+ */
+public class PluginBatch {
+
+    /**
+     * Create an operation reloading plugins, unloading all of them before loading them again.
+     *
+     * @param sender  who receives progress and the timings, null for none.
+     * @param plugins the plugins to reload.
+     * @return the operation.
+     */
+    public static BulkOperation reload(CommandSender sender, Collection<Plugin> plugins) {
+        DependencyGraph graph = PluginBatch.createGraph(plugins);
+        Map<String, PluginTiming> timings = PluginBatch.createTimings(graph);
+        CommandSyncCoalescer commandSyncCoalescer = PlugMan.getInstance().getCommandSyncCoalescer();
+
+        BulkOperation operation = new BulkOperation("reload all", sender, commandSyncCoalescer::beginBatch, cancelled -> {
+            commandSyncCoalescer.endBatch();
+            PluginUtil.cleanup();
+            PluginBatch.sendResult(sender, cancelled, "reload", timings);
+        });
+
+        // Only plugins this operation unloaded are loaded again, a cancelled reload still loads all of them
+        Set<String> unloaded = new HashSet<>();
+
+        for (Plugin plugin : graph.getUnloadOrder())
+            operation.addStep(() -> {
+                long start = System.nanoTime();
+                unloaded.add(plugin.getName());
+                PluginUtil.unload(plugin, false);
+                timings.get(plugin.getName()).setStopNanos(System.nanoTime() - start);
+            });
+
+        for (Plugin plugin : graph.getLoadOrder())
+            operation.addRequiredStep(() -> {
+                if (!unloaded.contains(plugin.getName())) return;
+                long start = System.nanoTime();
+                PluginUtil.load(plugin.getName());
+                PluginTiming timing = timings.get(plugin.getName());
+                timing.setStartNanos(System.nanoTime() - start);
+                PlugMan.getInstance().getMetricsRegistry().histogram("reload").record(timing.getTotalNanos());
+            });
+
+        return operation;
+    }
+
+    /**
+     * Create an operation restarting plugins, disabling all of them before enabling them again.
+     *
+     * @param sender  who receives progress and the timings, null for none.
+     * @param plugins the plugins to restart.
+     * @return the operation.
+     */
+    public static BulkOperation restart(CommandSender sender, Collection<Plugin> plugins) {
+        DependencyGraph graph = PluginBatch.createGraph(plugins);
+        Map<String, PluginTiming> timings = PluginBatch.createTimings(graph);
+
+        BulkOperation operation = new BulkOperation("restart all", sender, () -> {
+        }, cancelled -> PluginBatch.sendResult(sender, cancelled, "restart", timings));
+
+        // Only plugins this operation disabled are enabled again, a cancelled restart still enables all of them
+        Set<String> disabled = new HashSet<>();
+
+        for (Plugin plugin : graph.getUnloadOrder())
+            operation.addStep(() -> {
+                long start = System.nanoTime();
+                disabled.add(plugin.getName());
+                PluginUtil.disable(plugin);
+                timings.get(plugin.getName()).setStopNanos(System.nanoTime() - start);
+            });
+
+        for (Plugin plugin : graph.getLoadOrder())
+            operation.addRequiredStep(() -> {
+                if (!disabled.contains(plugin.getName())) return;
+                long start = System.nanoTime();
+                PluginUtil.enable(plugin);
+                timings.get(plugin.getName()).setStartNanos(System.nanoTime() - start);
+            });
+
+        return operation;
+    }
+
+    /**
+     * Create an operation enabling plugins, dependencies first.
+     *
+     * @param sender  who receives progress, null for none.
+     * @param plugins the plugins to enable.
+     * @return the operation.
+     */
+    public static BulkOperation enable(CommandSender sender, Collection<Plugin> plugins) {
+        BulkOperation operation = new BulkOperation("enable all", sender, () -> {
+        }, cancelled -> {
+            if (!cancelled && sender != null) sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("enable.all"));
+        });
+        for (Plugin plugin : PluginBatch.createGraph(plugins).getLoadOrder())
+            operation.addStep(() -> PluginUtil.enable(plugin));
+        return operation;
+    }
+
+    /**
+     * Create an operation disabling plugins, dependents first.
+     *
+     * @param sender  who receives progress, null for none.
+     * @param plugins the plugins to disable.
+     * @return the operation.
+     */
+    public static BulkOperation disable(CommandSender sender, Collection<Plugin> plugins) {
+        BulkOperation operation = new BulkOperation("disable all", sender, () -> {
+        }, cancelled -> {
+            if (!cancelled && sender != null) sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format("disable.all"));
+        });
+        for (Plugin plugin : PluginBatch.createGraph(plugins).getUnloadOrder())
+            operation.addStep(() -> PluginUtil.disable(plugin));
+        return operation;
+    }
+
+    /**
+     * Format timings as a table, one line per plugin.
+     *
+     * @param key     the message key of a single line, taking the name and both times in milliseconds.
+     * @param timings the timings.
+     * @return the formatted lines.
+     */
+    public static List<String> formatTimings(String key, List<PluginTiming> timings) {
+        List<String> lines = new ArrayList<>();
+        for (PluginTiming timing : timings)
+            lines.add(PlugMan.getInstance().getMessageFormatter().format(false, key, timing.getName(), StringUtil.toMillis(timing.getStopNanos()), StringUtil.toMillis(timing.getStartNanos())));
+        return lines;
+    }
+
+    private static void sendResult(CommandSender sender, boolean cancelled, String key, Map<String, PluginTiming> timings) {
+        if (sender == null) return;
+        if (!cancelled) sender.sendMessage(PlugMan.getInstance().getMessageFormatter().format(key + ".all"));
+
+        List<PluginTiming> sorted = PluginBatch.sortTimings(timings);
+        sorted.removeIf(timing -> timing.getTotalNanos() == 0);
+        for (String line : PluginBatch.formatTimings(key + ".timing", sorted)) sender.sendMessage(line);
+    }
+
+    private static DependencyGraph createGraph(Collection<Plugin> plugins) {
+        DependencyGraph graph = new DependencyGraph(plugins);
+        if (!graph.getCyclic().isEmpty()) {
+            List<String> names = new ArrayList<>();
+            for (Plugin plugin : graph.getCyclic()) names.add(plugin.getName());
+            Logger.getLogger(PluginBatch.class.getName()).warning("Dependency cycle between " + String.join(", ", names) + ", keeping their current order");
+        }
+        return graph;
+    }
+
+    private static Map<String, PluginTiming> createTimings(DependencyGraph graph) {
+        Map<String, PluginTiming> timings = new LinkedHashMap<>();
+        for (Plugin plugin : graph.getLoadOrder()) timings.put(plugin.getName(), new PluginTiming(plugin.getName()));
+        return timings;
+    }
+
+    private static List<PluginTiming> sortTimings(Map<String, PluginTiming> timings) {
+        List<PluginTiming> sorted = new ArrayList<>(timings.values());
+        sorted.sort(Comparator.comparingLong(PluginTiming::getTotalNanos).reversed());
+        return sorted;
+    }
+
+}
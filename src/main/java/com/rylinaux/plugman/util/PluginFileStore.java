@@ -0,0 +1,159 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.pojo.PluginFileState;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe store of jar file name, fingerprint and plugin name for auto (re/un)load.
+ * <p>
+ * Lookups work in both directions (file to plugin and plugin to file) without scanning and never block.
+ * Updates are serialized and bump the store version, so callers can detect and skip updates based on a state
+ * that is no longer current, and snapshots never observe a half-applied update.
+ */
+public class PluginFileStore {
+
+    /**
+     * The state of every known jar by file name.
+     */
+    private final Map<String, PluginFileState> byFile = new ConcurrentHashMap<>();
+
+    /**
+     * The file name of every known plugin by lower case plugin name.
+     */
+    private final Map<String, String> fileByPlugin = new ConcurrentHashMap<>();
+
+    /**
+     * The version of the store, incremented on every update.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Check whether a jar is known.
+     *
+     * @param fileName the name of the jar file.
+     * @return whether the jar is known.
+     */
+    public boolean contains(String fileName) {
+        return this.byFile.containsKey(fileName);
+    }
+
+    /**
+     * Get the state of a jar.
+     *
+     * @param fileName the name of the jar file.
+     * @return the state, or null if the jar is not known.
+     */
+    public PluginFileState get(String fileName) {
+        return this.byFile.get(fileName);
+    }
+
+    /**
+     * Get the state of the jar a plugin was loaded from.
+     *
+     * @param pluginName the name of the plugin.
+     * @return the state, or null if the plugin is not known.
+     */
+    public PluginFileState getByPlugin(String pluginName) {
+        String fileName = this.fileByPlugin.get(pluginName.toLowerCase(Locale.ROOT));
+        return fileName == null ? null : this.byFile.get(fileName);
+    }
+
+    /**
+     * Store the state of a jar, replacing any previous state.
+     *
+     * @param fileName   the name of the jar file.
+     * @param hash       the fingerprint of the jar file.
+     * @param pluginName the name of the plugin in the jar, or null if unknown.
+     * @return the new state.
+     */
+    public synchronized PluginFileState put(String fileName, String hash, String pluginName) {
+        return this.byFile.compute(fileName, (name, previous) -> this.write(name, hash, pluginName, previous));
+    }
+
+    /**
+     * Update the fingerprint of a jar, but only if it was not changed since the given state was read.
+     *
+     * @param expected the state the update is based on.
+     * @param hash     the new fingerprint.
+     * @return whether the state was updated.
+     */
+    public synchronized boolean replaceHash(PluginFileState expected, String hash) {
+        boolean[] replaced = {false};
+        this.byFile.computeIfPresent(expected.getFileName(), (name, previous) -> {
+            if (previous.getVersion() != expected.getVersion()) return previous;
+            replaced[0] = true;
+            return this.write(name, hash, previous.getPluginName(), previous);
+        });
+        return replaced[0];
+    }
+
+    /**
+     * Forget a jar.
+     *
+     * @param fileName the name of the jar file.
+     * @return the removed state, or null if the jar was not known.
+     */
+    public synchronized PluginFileState remove(String fileName) {
+        PluginFileState[] removed = {null};
+        this.byFile.computeIfPresent(fileName, (name, previous) -> {
+            if (previous.getPluginName() != null)
+                this.fileByPlugin.remove(previous.getPluginName().toLowerCase(Locale.ROOT), name);
+            this.version.incrementAndGet();
+            removed[0] = previous;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Get a consistent copy of all known jars.
+     *
+     * @return an unmodifiable snapshot by file name.
+     */
+    public synchronized Map<String, PluginFileState> snapshot() {
+        return Collections.unmodifiableMap(new HashMap<>(this.byFile));
+    }
+
+    /**
+     * Create a new state and keep the plugin lookup in sync, must be called from within a compute function.
+     */
+    private PluginFileState write(String fileName, String hash, String pluginName, PluginFileState previous) {
+        if (previous != null && previous.getPluginName() != null && !previous.getPluginName().equalsIgnoreCase(pluginName))
+            this.fileByPlugin.remove(previous.getPluginName().toLowerCase(Locale.ROOT), fileName);
+        if (pluginName != null) this.fileByPlugin.put(pluginName.toLowerCase(Locale.ROOT), fileName);
+        return new PluginFileState(fileName, hash, pluginName, this.version.incrementAndGet());
+    }
+
+}
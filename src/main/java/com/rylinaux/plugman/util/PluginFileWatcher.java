@@ -0,0 +1,290 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.PluginFileState;
+import com.rylinaux.plugman.pojo.PluginJarEntry;
+import com.rylinaux.plugman.pojo.PreparedPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the plugins directory and turns file events into auto (re/un)load actions.
+ * <p>
+ * Events are staged in a {@link JarChangePipeline} so half-written jars are never acted on.
+ * A low frequency reconciliation sweep runs alongside the watcher to catch events the file system dropped.
+ */
+public class PluginFileWatcher {
+
+    /**
+     * The instance of PlugMan.
+     */
+    private final PlugMan plugMan;
+
+    /**
+     * The directory being watched.
+     */
+    private final File pluginDirectory;
+
+    /**
+     * Whether new jars should be loaded.
+     */
+    private final boolean autoLoad;
+
+    /**
+     * Whether deleted jars should be unloaded.
+     */
+    private final boolean autoUnload;
+
+    /**
+     * Whether changed jars should be reloaded.
+     */
+    private final boolean autoReload;
+
+    /**
+     * The watch service, null if the file system does not support watching.
+     */
+    private WatchService watchService = null;
+
+    /**
+     * The thread polling the watch service.
+     */
+    private Thread watchThread = null;
+
+    /**
+     * The id of the reconciliation task.
+     */
+    private int reconcileTaskId = -1;
+
+    /**
+     * Stages changed jars until they are completely written.
+     */
+    private JarChangePipeline pipeline = null;
+
+    /**
+     * Construct the object.
+     *
+     * @param plugMan         the instance of PlugMan.
+     * @param pluginDirectory the directory to watch.
+     * @param autoLoad        whether new jars should be loaded.
+     * @param autoUnload      whether deleted jars should be unloaded.
+     * @param autoReload      whether changed jars should be reloaded.
+     */
+    public PluginFileWatcher(PlugMan plugMan, File pluginDirectory, boolean autoLoad, boolean autoUnload, boolean autoReload) {
+        this.plugMan = plugMan;
+        this.pluginDirectory = pluginDirectory;
+        this.autoLoad = autoLoad;
+        this.autoUnload = autoUnload;
+        this.autoReload = autoReload;
+    }
+
+    /**
+     * Start watching the plugins directory.
+     *
+     * @param reconcileSeconds the interval of the reconciliation sweep in seconds.
+     * @param settleMillis     how long a jar must stay unchanged before it is acted on, in milliseconds.
+     */
+    public void start(long reconcileSeconds, long settleMillis) {
+        this.pipeline = new JarChangePipeline(this.pluginDirectory, settleMillis, this::handle);
+        this.pipeline.start(this.plugMan, 10L);
+
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.pluginDirectory.toPath().register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+            this.watchThread = new Thread(this::poll, "PlugMan File Watcher");
+            this.watchThread.setDaemon(true);
+            this.watchThread.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            this.plugMan.getLogger().log(Level.WARNING, "Could not watch the plugins directory, falling back to the reconciliation sweep only", e);
+            this.watchService = null;
+        }
+
+        long period = Math.max(1, reconcileSeconds) * 20;
+        this.reconcileTaskId = Bukkit.getScheduler().scheduleAsyncRepeatingTask(this.plugMan, this::reconcile, period, period);
+    }
+
+    /**
+     * Stop watching the plugins directory.
+     */
+    public void stop() {
+        if (this.reconcileTaskId != -1) {
+            Bukkit.getScheduler().cancelTask(this.reconcileTaskId);
+            this.reconcileTaskId = -1;
+        }
+
+        if (this.pipeline != null) {
+            this.pipeline.stop();
+            this.pipeline = null;
+        }
+
+        if (this.watchService != null) try {
+            this.watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        this.watchService = null;
+        this.watchThread = null;
+    }
+
+    /**
+     * Poll the watch service until it is closed.
+     */
+    private void poll() {
+        WatchService watchService = this.watchService;
+
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    this.reconcile();
+                    continue;
+                }
+
+                String fileName = event.context().toString();
+                if (fileName.toLowerCase(Locale.ROOT).endsWith(".jar")) this.pipeline.submit(fileName);
+            }
+
+            if (!key.reset()) {
+                this.plugMan.getLogger().warning("The plugins directory is no longer accessible, stopping the file watcher");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Check every known and present jar against the plugins directory and stage the ones that changed.
+     */
+    public void reconcile() {
+        if (!this.pluginDirectory.isDirectory()) return;
+
+        PluginFileStore store = this.plugMan.getPluginFileStore();
+        Set<String> fileNames = new HashSet<>(store.snapshot().keySet());
+
+        File[] files = this.pluginDirectory.listFiles();
+        if (files != null) for (File file : files)
+            if (file.isFile() && file.getName().toLowerCase(Locale.ROOT).endsWith(".jar")) fileNames.add(file.getName());
+
+        for (String fileName : fileNames) {
+            File file = new File(this.pluginDirectory, fileName);
+            boolean known = store.contains(fileName);
+            if (known && file.isFile() && this.plugMan.getPluginJarIndex().isCurrent(file)) continue;
+            this.pipeline.submit(fileName);
+        }
+    }
+
+    /**
+     * Work out what happened to a jar and schedule the matching action.
+     *
+     * @param fileName the name of the jar file.
+     */
+    private synchronized void handle(String fileName) {
+        PluginFileStore store = this.plugMan.getPluginFileStore();
+        PluginFileState state = store.get(fileName);
+        File file = new File(this.pluginDirectory, fileName);
+
+        if (!file.isFile()) {
+            // Deleted jars would otherwise stay in the fingerprint cache forever
+            JarFingerprint.invalidate(file);
+            if (!this.autoUnload || state == null) return;
+
+            this.plugMan.getPluginJarIndex().refresh(file);
+
+            Plugin plugin = state.getPluginName() == null ? null : Bukkit.getPluginManager().getPlugin(state.getPluginName());
+            if (plugin == null) {
+                store.remove(fileName);
+                return;
+            }
+
+            if (PluginUtil.isIgnored(plugin)) return;
+
+            store.remove(fileName);
+            this.plugMan.getMetricsRegistry().counter("auto.unload").increment();
+            Bukkit.getScheduler().runTask(this.plugMan, () -> Bukkit.getConsoleSender().sendMessage(PluginUtil.unload(plugin)));
+            return;
+        }
+
+        if (state == null) {
+            if (!this.autoLoad) return;
+
+            PluginJarEntry entry = this.plugMan.getPluginJarIndex().refresh(file);
+            store.put(fileName, entry == null ? null : entry.getHash(), entry == null ? null : entry.getName());
+
+            this.plugMan.getMetricsRegistry().counter("auto.load").increment();
+            PluginUtil.loadAsync(fileName.substring(0, fileName.length() - ".jar".length()), Bukkit.getConsoleSender()::sendMessage);
+            return;
+        }
+
+        if (!this.autoReload) return;
+
+        PluginJarEntry entry = this.plugMan.getPluginJarIndex().refresh(file);
+        if (entry == null || entry.getHash() == null || entry.getHash().equalsIgnoreCase(state.getHash())) return;
+
+        Plugin plugin = state.getPluginName() == null ? null : Bukkit.getPluginManager().getPlugin(state.getPluginName());
+        if (plugin == null) {
+            store.remove(fileName);
+            return;
+        }
+
+        if (PluginUtil.isIgnored(plugin)) return;
+
+        // Somebody else updated this jar in the meantime, their action wins
+        if (!store.replaceHash(state, entry.getHash())) return;
+
+        this.plugMan.getMetricsRegistry().counter("auto.reload").increment();
+
+        // The new jar is already on disk, verify it here so the main thread only unloads and loads
+        PreparedPlugin prepared = PluginUtil.prepare(plugin.getName());
+        Bukkit.getScheduler().runTask(this.plugMan, () -> {
+            if (prepared.getError() != null) {
+                Bukkit.getConsoleSender().sendMessage(prepared.getError());
+                return;
+            }
+            Bukkit.getConsoleSender().sendMessage(PluginUtil.unload(plugin));
+            Bukkit.getConsoleSender().sendMessage(PluginUtil.commit(prepared));
+        });
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of every plugin of the server and whether it is enabled, readable from any thread.
+ * <p>
+ * The plugin manager is only safe to read on the main thread, PlugMan even changes its plugin list through
+ * reflection. The snapshot is rebuilt on the main thread whenever a plugin is enabled, disabled, loaded or
+ * unloaded, so metrics exporters never touch the plugin manager.
+ */
+public class PluginInventory implements Listener {
+
+    /**
+     * Whether every plugin is enabled by name, replaced as a whole on every update.
+     */
+    private volatile Map<String, Boolean> states = Collections.emptyMap();
+
+    /**
+     * Rebuild the snapshot, must be called on the main thread.
+     */
+    public void update() {
+        Map<String, Boolean> states = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Plugin plugin : Bukkit.getPluginManager().getPlugins())
+            states.put(plugin.getName(), plugin.isEnabled());
+        this.states = Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * Get every plugin and whether it is enabled as of the last update.
+     *
+     * @return whether each plugin is enabled by name
+     */
+    public Map<String, Boolean> getStates() {
+        return this.states;
+    }
+
+    /**
+     * Get the number of loaded plugins as of the last update.
+     *
+     * @return the number of plugins
+     */
+    public int getLoadedCount() {
+        return this.states.size();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        this.update();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        this.update();
+    }
+
+}
@@ -0,0 +1,425 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.pojo.PluginJarEntry;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.InvalidDescriptionException;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipException;
+
+/**
+ * Index of all jars inside the plugins directory.
+ * <p>
+ * Every jar is opened once, its plugin.yml parsed and the result cached in memory and on disk.
+ * Jars are only reopened when their size or last modification time changes. The full description of a jar is
+ * kept in memory once it was needed to load the plugin, until the jar changes.
+ */
+public class PluginJarIndex {
+
+    /**
+     * The logger for problems with single jars.
+     */
+    private static final Logger LOGGER = Logger.getLogger(PluginJarIndex.class.getName());
+
+    /**
+     * The directory containing the plugin jars.
+     */
+    private final File pluginDirectory;
+
+    /**
+     * The file the index is persisted to.
+     */
+    private final File indexFile;
+
+    /**
+     * All indexed jars by file name.
+     */
+    private final Map<String, PluginJarEntry> entries = new HashMap<>();
+
+    /**
+     * Parsed descriptions of indexed jars by file name, only of jars that were loaded since they last changed.
+     */
+    private final Map<String, PluginDescriptionFile> descriptions = new HashMap<>();
+
+    /**
+     * Whether the index changed since it was last saved.
+     */
+    private boolean dirty = false;
+
+    /**
+     * Construct the object.
+     *
+     * @param pluginDirectory the directory containing the plugin jars.
+     * @param indexFile       the file the index is persisted to.
+     */
+    public PluginJarIndex(File pluginDirectory, File indexFile) {
+        this.pluginDirectory = pluginDirectory;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Load the persisted index from disk.
+     */
+    public synchronized void load() {
+        this.entries.clear();
+        this.descriptions.clear();
+
+        if (!this.indexFile.isFile()) return;
+
+        YamlConfiguration cfg = YamlConfiguration.loadConfiguration(this.indexFile);
+        for (Map<?, ?> map : cfg.getMapList("jars")) try {
+            String fileName = (String) map.get("file");
+            if (fileName == null) continue;
+
+            PluginJarEntry entry = new PluginJarEntry(fileName,
+                    ((Number) map.get("size")).longValue(),
+                    ((Number) map.get("last-modified")).longValue(),
+                    (String) map.get("hash"),
+                    (String) map.get("name"),
+                    (String) map.get("version"),
+                    (String) map.get("main"),
+                    PluginJarIndex.toStringList(map.get("depend")),
+                    PluginJarIndex.toStringList(map.get("softdepend")));
+            this.entries.put(fileName, entry);
+        } catch (ClassCastException | NullPointerException e) {
+            PluginJarIndex.LOGGER.warning("Skipping invalid jar index entry: " + map);
+        }
+
+        this.dirty = false;
+    }
+
+    /**
+     * Save the index to disk if it changed.
+     */
+    public synchronized void save() {
+        if (!this.dirty && this.indexFile.isFile()) return;
+
+        List<Map<String, Object>> jars = new ArrayList<>();
+        for (PluginJarEntry entry : this.entries.values()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("file", entry.getFileName());
+            map.put("size", entry.getSize());
+            map.put("last-modified", entry.getLastModified());
+            map.put("hash", entry.getHash());
+            if (entry.isPlugin()) {
+                map.put("name", entry.getName());
+                map.put("version", entry.getVersion());
+                map.put("main", entry.getMain());
+                map.put("depend", new ArrayList<>(entry.getDepend()));
+                map.put("softdepend", new ArrayList<>(entry.getSoftDepend()));
+            }
+            jars.add(map);
+        }
+
+        YamlConfiguration cfg = new YamlConfiguration();
+        cfg.set("jars", jars);
+
+        try {
+            if (!this.indexFile.getParentFile().isDirectory()) this.indexFile.getParentFile().mkdirs();
+            cfg.save(this.indexFile);
+            this.dirty = false;
+        } catch (IOException e) {
+            PluginJarIndex.LOGGER.log(Level.WARNING, "Could not save the jar index to " + this.indexFile, e);
+        }
+    }
+
+    /**
+     * Bring the index up to date with the plugins directory.
+     * <p>
+     * Unchanged jars are only checked against their size and last modification time.
+     *
+     * @return the number of entries added, changed or removed.
+     */
+    public int refresh() {
+        return this.refresh(1);
+    }
+
+    /**
+     * Bring the index up to date with the plugins directory, reading changed jars in parallel.
+     * <p>
+     * Unchanged jars are only checked against their size and last modification time. Changed jars are read on
+     * at most {@code parallelism} threads and merged in file name order, so the result does not depend on
+     * which thread finished first.
+     *
+     * @param parallelism the maximum number of jars to read at once.
+     * @return the number of entries added, changed or removed.
+     */
+    public synchronized int refresh(int parallelism) {
+        File[] files = this.pluginDirectory.listFiles();
+        if (files == null) return 0;
+
+        Set<String> seen = new HashSet<>();
+        List<File> stale = new ArrayList<>();
+
+        for (File file : files) {
+            if (!PluginJarIndex.isJar(file)) continue;
+            seen.add(file.getName());
+
+            PluginJarEntry entry = this.entries.get(file.getName());
+            if (entry == null || !entry.matches(file.length(), file.lastModified())) stale.add(file);
+        }
+
+        stale.sort(Comparator.comparing(File::getName));
+
+        List<PluginJarEntry> read = PluginJarIndex.read(stale, parallelism);
+        for (PluginJarEntry entry : read) {
+            this.entries.put(entry.getFileName(), entry);
+            this.descriptions.remove(entry.getFileName());
+        }
+
+        for (String fileName : this.entries.keySet())
+            if (!seen.contains(fileName)) JarFingerprint.invalidate(new File(this.pluginDirectory, fileName));
+
+        int removed = this.entries.size();
+        this.entries.keySet().retainAll(seen);
+        this.descriptions.keySet().retainAll(seen);
+        removed -= this.entries.size();
+
+        // Jars that could not be read stay stale and are retried on the next refresh
+        int changed = read.size() + removed;
+        if (changed > 0) this.dirty = true;
+        return changed;
+    }
+
+    /**
+     * Bring a single jar up to date in the index.
+     *
+     * @param file the jar file.
+     * @return the entry for the jar, or null if it no longer exists.
+     */
+    public synchronized PluginJarEntry refresh(File file) {
+        if (!PluginJarIndex.isJar(file)) {
+            JarFingerprint.invalidate(file);
+            this.descriptions.remove(file.getName());
+            if (this.entries.remove(file.getName()) != null) this.dirty = true;
+            return null;
+        }
+
+        PluginJarEntry entry = this.entries.get(file.getName());
+        if (entry != null && entry.matches(file.length(), file.lastModified())) return entry;
+
+        this.descriptions.remove(file.getName());
+        entry = PluginJarIndex.read(file, this.descriptions);
+        this.entries.put(file.getName(), entry);
+        this.dirty = true;
+        return entry;
+    }
+
+    /**
+     * Get the full description of a jar, only reading the jar if it changed since its description was last needed.
+     *
+     * @param file the jar file.
+     * @return the description of the plugin in the jar.
+     * @throws InvalidDescriptionException if the jar does not exist or contains no valid plugin.yml.
+     */
+    public synchronized PluginDescriptionFile getDescription(File file) throws InvalidDescriptionException {
+        PluginJarEntry entry = this.refresh(file);
+        if (entry == null)
+            throw new InvalidDescriptionException(new FileNotFoundException("Jar does not exist: " + file.getName()));
+
+        PluginDescriptionFile description = this.descriptions.get(file.getName());
+        if (description != null) return description;
+
+        if (!entry.isPlugin())
+            throw new InvalidDescriptionException("Jar does not contain a valid plugin.yml: " + file.getName());
+
+        // Indexed in an earlier run, the description itself was never read
+        description = PluginJarIndex.readDescription(file);
+        this.descriptions.put(file.getName(), description);
+        return description;
+    }
+
+    /**
+     * Check whether a jar is indexed and unchanged since it was indexed.
+     *
+     * @param file the jar file.
+     * @return whether the index entry is up to date.
+     */
+    public synchronized boolean isCurrent(File file) {
+        PluginJarEntry entry = this.entries.get(file.getName());
+        return entry != null && entry.matches(file.length(), file.lastModified());
+    }
+
+    /**
+     * Get the entry of a jar by its file name.
+     *
+     * @param fileName the name of the jar file.
+     * @return the entry, or null if it is not indexed.
+     */
+    public synchronized PluginJarEntry getByFileName(String fileName) {
+        return this.entries.get(fileName);
+    }
+
+    /**
+     * Get the entry of a jar by the name of the plugin it contains.
+     *
+     * @param name the name of the plugin.
+     * @return the entry, or null if no indexed jar contains that plugin.
+     */
+    public synchronized PluginJarEntry getByPluginName(String name) {
+        for (PluginJarEntry entry : this.entries.values())
+            if (entry.isPlugin() && entry.getName().equalsIgnoreCase(name)) return entry;
+        return null;
+    }
+
+    /**
+     * Get all indexed jars.
+     *
+     * @return a copy of all entries, sorted by file name.
+     */
+    public synchronized List<PluginJarEntry> getEntries() {
+        List<PluginJarEntry> list = new ArrayList<>(this.entries.values());
+        list.sort(Comparator.comparing(PluginJarEntry::getFileName));
+        return list;
+    }
+
+    /**
+     * Open several jars and parse their plugin.yml files.
+     *
+     * @param files       the jar files.
+     * @param parallelism the maximum number of jars to read at once.
+     * @return the entries for the jars, in the same order as the files, without jars that could not be read.
+     */
+    private static List<PluginJarEntry> read(List<File> files, int parallelism) {
+        List<PluginJarEntry> result = new ArrayList<>(files.size());
+
+        int threads = Math.min(parallelism, files.size());
+        if (threads <= 1) {
+            for (File file : files) result.add(PluginJarIndex.read(file, null));
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "PlugMan Jar Scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<PluginJarEntry>> futures = new ArrayList<>(files.size());
+            for (File file : files) futures.add(executor.submit(() -> PluginJarIndex.read(file, null)));
+
+            boolean interrupted = false;
+            for (int i = 0; i < futures.size(); i++) {
+                Future<PluginJarEntry> future = futures.get(i);
+                while (true) try {
+                    result.add(future.get());
+                    break;
+                } catch (InterruptedException e) {
+                    // The reads are short, finish them so no result is lost and restore the flag afterwards
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    PluginJarIndex.LOGGER.log(Level.WARNING, "Could not index " + files.get(i).getName(), e.getCause());
+                    break;
+                }
+            }
+
+            if (interrupted) Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    /**
+     * Open a jar and parse its plugin.yml.
+     *
+     * @param file         the jar file.
+     * @param descriptions receives the parsed description by file name, may be null.
+     * @return the entry for the jar.
+     */
+    private static PluginJarEntry read(File file, Map<String, PluginDescriptionFile> descriptions) {
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        String hash = null;
+        try {
+            hash = JarFingerprint.getFingerprint(file);
+        } catch (IOException e) {
+            PluginJarIndex.LOGGER.log(Level.WARNING, "Could not fingerprint " + file.getName(), e);
+        }
+
+        try {
+            PluginDescriptionFile description = PluginJarIndex.readDescription(file);
+            if (descriptions != null) descriptions.put(file.getName(), description);
+            return new PluginJarEntry(file.getName(), size, lastModified, hash, description.getName(), description.getVersion(), description.getMain(), description.getDepend(), description.getSoftDepend());
+        } catch (InvalidDescriptionException e) {
+            if (e.getCause() instanceof ZipException)
+                PluginJarIndex.LOGGER.warning("Possible broken plugin detected: " + file.getName());
+            else if (!(e.getCause() instanceof FileNotFoundException))
+                PluginJarIndex.LOGGER.log(Level.WARNING, "Could not read the plugin.yml of " + file.getName(), e);
+        }
+
+        return new PluginJarEntry(file.getName(), size, lastModified, hash, null, null, null, null, null);
+    }
+
+    /**
+     * Open a jar and parse its plugin.yml.
+     *
+     * @param file the jar file.
+     * @return the description.
+     * @throws InvalidDescriptionException if the jar cannot be read or contains no valid plugin.yml.
+     */
+    private static PluginDescriptionFile readDescription(File file) throws InvalidDescriptionException {
+        try (JarFile jarFile = new JarFile(file)) {
+            JarEntry pluginYml = jarFile.getJarEntry("plugin.yml");
+            if (pluginYml == null)
+                throw new InvalidDescriptionException(new FileNotFoundException("Jar does not contain plugin.yml"));
+
+            try (InputStream stream = jarFile.getInputStream(pluginYml)) {
+                return new PluginDescriptionFile(stream);
+            }
+        } catch (IOException | YAMLException e) {
+            throw new InvalidDescriptionException(e);
+        }
+    }
+
+    private static boolean isJar(File file) {
+        return file.isFile() && file.getName().toLowerCase(Locale.ROOT).endsWith(".jar");
+    }
+
+    private static List<String> toStringList(Object object) {
+        List<String> list = new ArrayList<>();
+        if (object instanceof Collection) for (Object o : (Collection<?>) object) list.add(String.valueOf(o));
+        return list;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a phase of a plugin operation.
+ * <p>
+ * Only referenced through {@link PhaseTimings} once it made sure the flight recorder exists, older JVMs never
+ * load this class.
+ */
+@Name("com.rylinaux.plugman.PluginPhase")
+@Label("Plugin Phase")
+@Category("PlugMan")
+@Description("A phase of loading, unloading or reloading a plugin")
+@StackTrace(false)
+public class PluginPhaseEvent extends Event {
+
+    /**
+     * The type of this event, checked before an event is created so nothing is allocated while it is not recorded.
+     */
+    private static final EventType TYPE = EventType.getEventType(PluginPhaseEvent.class);
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Plugin")
+    private String plugin;
+
+    @Label("Phase")
+    private String phase;
+
+    @Label("Success")
+    private boolean success;
+
+    /**
+     * Start an event for a phase.
+     *
+     * @param operation  the operation.
+     * @param pluginName the name of the plugin.
+     * @param phase      the name of the phase.
+     * @return the event, or null if the event is not being recorded.
+     */
+    static Object start(String operation, String pluginName, String phase) {
+        if (!TYPE.isEnabled()) return null;
+
+        PluginPhaseEvent event = new PluginPhaseEvent();
+        event.operation = operation;
+        event.plugin = pluginName;
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finish and commit an event started by {@link #start(String, String, String)}.
+     *
+     * @param event   the event.
+     * @param success whether the phase succeeded.
+     */
+    static void finish(Object event, boolean success) {
+        PluginPhaseEvent phaseEvent = (PluginPhaseEvent) event;
+        phaseEvent.success = success;
+        phaseEvent.commit();
+    }
+
+}
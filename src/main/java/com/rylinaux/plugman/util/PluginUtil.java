@@ -29,6 +29,9 @@ package com.rylinaux.plugman.util;
 import com.rylinaux.plugman.PlugMan;
 import com.rylinaux.plugman.api.GentleUnload;
 import com.rylinaux.plugman.api.PlugManAPI;
+import com.rylinaux.plugman.pojo.PluginFileState;
+import com.rylinaux.plugman.pojo.PluginJarEntry;
+import com.rylinaux.plugman.pojo.PreparedPlugin;
 import org.apache.commons.io.FileUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -37,19 +40,15 @@ import org.bukkit.command.PluginCommand;
 import org.bukkit.command.SimpleCommandMap;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.*;
-import org.bukkit.plugin.java.JavaPlugin;
-import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
@@ -57,6 +56,7 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -70,10 +70,6 @@ import java.util.zip.ZipFile;
  */
 public class PluginUtil {
 
-    private static Field commandMapField;
-    private static Field knownCommandsField;
-    private static String nmsVersion = null;
-
     private static final Class<?> pluginClassLoader;
     private static final Field pluginClassLoaderPlugin;
 
@@ -137,16 +133,20 @@ public class PluginUtil {
      * @param plugin the plugin to enable
      */
     public static void enable(Plugin plugin) {
-        if (plugin != null && !plugin.isEnabled()) Bukkit.getPluginManager().enablePlugin(plugin);
+        if (plugin == null || plugin.isEnabled()) return;
+
+        PhaseTimer timer = PlugMan.getInstance().getPhaseTimings().begin("enable", plugin.getName()).phase("enable");
+        Bukkit.getPluginManager().enablePlugin(plugin);
+        if (plugin.isEnabled()) timer.done();
+        else timer.fail();
     }
 
     /**
      * Enable all plugins.
      */
     public static void enableAll() {
-        for (Plugin plugin : Bukkit.getPluginManager().getPlugins())
-            if (!PluginUtil.isIgnored(plugin))
-                PluginUtil.enable(plugin);
+        for (Plugin plugin : new DependencyGraph(PluginUtil.getManagedPlugins()).getLoadOrder())
+            PluginUtil.enable(plugin);
     }
 
     /**
@@ -155,16 +155,31 @@ public class PluginUtil {
      * @param plugin the plugin to disable
      */
     public static void disable(Plugin plugin) {
-        if (plugin != null && plugin.isEnabled()) Bukkit.getPluginManager().disablePlugin(plugin);
+        if (plugin == null || !plugin.isEnabled()) return;
+
+        PhaseTimer timer = PlugMan.getInstance().getPhaseTimings().begin("disable", plugin.getName()).phase("disable");
+        Bukkit.getPluginManager().disablePlugin(plugin);
+        timer.done();
     }
 
     /**
      * Disable all plugins.
      */
     public static void disableAll() {
+        for (Plugin plugin : new DependencyGraph(PluginUtil.getManagedPlugins()).getUnloadOrder())
+            PluginUtil.disable(plugin);
+    }
+
+    /**
+     * Returns all plugins that are not ignored.
+     *
+     * @return the plugins PlugMan may manage
+     */
+    public static List<Plugin> getManagedPlugins() {
+        List<Plugin> plugins = new ArrayList<>();
         for (Plugin plugin : Bukkit.getPluginManager().getPlugins())
-            if (!PluginUtil.isIgnored(plugin))
-                PluginUtil.disable(plugin);
+            if (!PluginUtil.isIgnored(plugin)) plugins.add(plugin);
+        return plugins;
     }
 
     /**
@@ -271,22 +286,9 @@ public class PluginUtil {
      * @return the commands registered
      */
     public static String getUsages(Plugin plugin) {
-        Map<String, Command> knownCommands = PluginUtil.getKnownCommands();
-        String parsedCommands = knownCommands.entrySet().stream()
-                .filter(s -> {
-                    if (s.getKey().contains(":")) {
-                        return s.getKey().split(":")[0].equalsIgnoreCase(plugin.getName());
-                    } else {
-                        ClassLoader cl = s.getValue().getClass().getClassLoader();
-                        try {
-                            return cl.getClass() == pluginClassLoader && pluginClassLoaderPlugin.get(cl) == plugin;
-                        } catch (IllegalAccessException e) {
-                            return false;
-                        }
-                    }
-                })
-                .map(s -> {
-                    String[] parts = s.getKey().split(":");
+        String parsedCommands = PluginUtil.getCommandKeys(plugin).stream()
+                .map(key -> {
+                    String[] parts = key.split(":");
                     // parts length equals 1 means that the key is the command
                     return parts.length == 1 ? parts[0] : parts[1];
                 })
@@ -300,31 +302,57 @@ public class PluginUtil {
     }
 
     /**
-     * Find which plugin has a given command registered.
+     * Returns the keys of the known commands a plugin has registered, including namespaced keys and aliases.
+     *
+     * @param plugin the plugin to deal with
+     * @return the keys of the registered commands
+     */
+    public static List<String> getCommandKeys(Plugin plugin) {
+        CommandIndex commandIndex = PluginUtil.getCommandIndex();
+        return commandIndex.getKeys(plugin);
+    }
+
+    /**
+     * Returns the command index, building it on first use.
+     *
+     * @return the command index
+     */
+    private static CommandIndex getCommandIndex() {
+        CommandIndex commandIndex = PlugMan.getInstance().getCommandIndex();
+        if (!commandIndex.isBuilt()) commandIndex.build(PluginUtil.getKnownCommands());
+        return commandIndex;
+    }
+
+    /**
+     * Returns the plugin a class loader belongs to.
      *
-     * @param command the command.
-     * @return the plugin.
+     * @param classLoader the class loader
+     * @return the plugin, or null if it is not a plugin class loader
+     */
+    public static Plugin getPluginByClassLoader(ClassLoader classLoader) {
+        if (classLoader == null || classLoader.getClass() != pluginClassLoader) return null;
+        try {
+            return (Plugin) pluginClassLoaderPlugin.get(classLoader);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Find which plugins have a given command registered.
+     *
+     * @param command the command, alias or namespaced key.
+     * @return the plugins, the one the command dispatches to first.
      */
     public static List<String> findByCommand(String command) {
-        List<String> plugins = new ArrayList<>();
+        if (command.startsWith("/")) command = command.substring(1);
 
-        List<String> pls = new ArrayList<>();
-        for (Map.Entry<String, Command> s : PluginUtil.getKnownCommands().entrySet()) {
-            ClassLoader cl = s.getValue().getClass().getClassLoader();
-            if (cl.getClass() != pluginClassLoader) {
-                String[] parts = s.getKey().split(":");
-                if (parts.length == 2 && parts[1].equalsIgnoreCase(command)) {
-                    Plugin plugin = Bukkit.getPluginManager().getPlugin(parts[0]);
-                    if (plugin != null) pls.add(plugin.getName());
-                }
-                continue;
-            }
+        CommandIndex commandIndex = PluginUtil.getCommandIndex();
 
-            try {
-                JavaPlugin plugin = (JavaPlugin) pluginClassLoaderPlugin.get(cl);
-                pls.add(plugin.getName());
-            } catch (IllegalAccessException ignored) {
-            }
+        List<String> plugins = new ArrayList<>();
+        for (String owner : commandIndex.getOwners(command)) {
+            Plugin plugin = PluginUtil.getPluginByName(owner);
+            if (plugin != null && !plugins.contains(plugin.getName())) plugins.add(plugin.getName());
         }
 
         return plugins;
@@ -352,43 +380,18 @@ public class PluginUtil {
         return false;
     }
 
+    /**
+     * Returns the description of a plugin jar, read through the jar index.
+     *
+     * @param file the jar file
+     * @return the description of the plugin in the jar
+     * @throws InvalidDescriptionException if the jar does not exist or contains no valid plugin.yml
+     */
     public static PluginDescriptionFile getPluginDescription(File file) throws InvalidDescriptionException {
         if (file == null)
             throw new InvalidDescriptionException("File cannot be null");
 
-        JarFile jar = null;
-        InputStream stream = null;
-
-        try {
-            jar = new JarFile(file);
-            JarEntry entry = jar.getJarEntry("plugin.yml");
-
-            if (entry == null) {
-                throw new InvalidDescriptionException(new FileNotFoundException("Jar does not contain plugin.yml"));
-            }
-
-            stream = jar.getInputStream(entry);
-
-            return new PluginDescriptionFile(stream);
-
-        } catch (IOException ex) {
-            throw new InvalidDescriptionException(ex);
-        } catch (YAMLException ex) {
-            throw new InvalidDescriptionException(ex);
-        } finally {
-            if (jar != null) {
-                try {
-                    jar.close();
-                } catch (IOException e) {
-                }
-            }
-            if (stream != null) {
-                try {
-                    stream.close();
-                } catch (IOException e) {
-                }
-            }
-        }
+        return PlugMan.getInstance().getPluginJarIndex().getDescription(file);
     }
 
     /**
@@ -403,153 +406,224 @@ public class PluginUtil {
 
     /**
      * Loads and enables a plugin.
+     * <p>
+     * Runs on the main thread, so the jar is not verified up front, the class loader still checks what it reads.
      *
      * @param name plugin's name
      * @return status message
      */
     public static String load(String name) {
+        PreparedPlugin prepared = PluginUtil.prepare(name, false);
+        if (prepared.getError() != null) return prepared.getError();
+        return PluginUtil.commit(prepared);
+    }
 
-        Plugin target = null;
-        boolean paperLoaded = false;
+    /**
+     * Loads and enables a plugin, doing all file work off the main thread.
+     *
+     * @param name     plugin's name
+     * @param callback receives the status message on the main thread
+     */
+    public static void loadAsync(String name, Consumer<String> callback) {
+        Bukkit.getScheduler().runTaskAsynchronously(PlugMan.getInstance(), () -> {
+            PreparedPlugin prepared = PluginUtil.prepare(name);
+            Bukkit.getScheduler().runTask(PlugMan.getInstance(), () -> callback.accept(prepared.getError() != null ? prepared.getError() : PluginUtil.commit(prepared)));
+        });
+    }
+
+    /**
+     * Locates and verifies a plugin jar without touching the server, safe to call off the main thread.
+     * <p>
+     * Every entry of the jar is read once, which verifies its CRC and signature and leaves the class bytes in the
+     * file system cache for the class loader.
+     *
+     * @param name plugin's name
+     * @return the prepared plugin, or a failed one with a status message
+     */
+    public static PreparedPlugin prepare(String name) {
+        return PluginUtil.prepare(name, true);
+    }
+
+    /**
+     * Locates a plugin jar without touching the server and optionally verifies it.
+     *
+     * @param name   plugin's name
+     * @param verify whether to read every entry of the jar, which should not happen on the main thread
+     * @return the prepared plugin, or a failed one with a status message
+     */
+    private static PreparedPlugin prepare(String name, boolean verify) {
+        PhaseTimer timer = PlugMan.getInstance().getPhaseTimings().begin("prepare", name).phase("locate");
 
         File pluginDir = new File("plugins");
 
-        if (!pluginDir.isDirectory())
-            return PlugMan.getInstance().getMessageFormatter().format("load.plugin-directory");
+        if (!pluginDir.isDirectory()) {
+            timer.fail();
+            return PreparedPlugin.failed(PlugMan.getInstance().getMessageFormatter().format("load.plugin-dir"));
+        }
 
         File pluginFile = new File(pluginDir, name + ".jar");
 
-        if (!pluginFile.isFile()) for (File f : pluginDir.listFiles())
-            if (f.getName().endsWith(".jar")) try {
-                PluginDescriptionFile desc = getPluginDescription(f);
-                if (desc.getName().equalsIgnoreCase(name)) {
-                    pluginFile = f;
-                    break;
-                }
-            } catch (InvalidDescriptionException e) {
-                return PlugMan.getInstance().getMessageFormatter().format("load.cannot-find");
+        if (!pluginFile.isFile()) {
+            PluginJarIndex pluginJarIndex = PlugMan.getInstance().getPluginJarIndex();
+
+            PluginJarEntry entry = null;
+            PluginFileState state = PlugMan.getInstance().getPluginFileStore().getByPlugin(name);
+            if (state != null) {
+                entry = pluginJarIndex.refresh(new File(pluginDir, state.getFileName()));
+                if (entry != null && (!entry.isPlugin() || !entry.getName().equalsIgnoreCase(name))) entry = null;
+            }
+
+            // Not known or replaced by another plugin, the jar may have been added without the watcher noticing
+            if (entry == null) {
+                pluginJarIndex.refresh();
+                entry = pluginJarIndex.getByPluginName(name);
             }
 
+            if (entry == null) {
+                timer.fail();
+                return PreparedPlugin.failed(PlugMan.getInstance().getMessageFormatter().format("load.cannot-find"));
+            }
+
+            pluginFile = new File(pluginDir, entry.getFileName());
+        }
+
+        timer.phase("descriptor");
+
+        PluginDescriptionFile description;
         try {
+            description = PluginUtil.getPluginDescription(pluginFile);
+        } catch (InvalidDescriptionException e) {
+            e.printStackTrace();
+            timer.fail();
+            return PreparedPlugin.failed(PlugMan.getInstance().getMessageFormatter().format("load.invalid-description"));
+        }
+
+        if (!verify) {
+            timer.done();
+            return PreparedPlugin.of(pluginFile, description);
+        }
+
+        timer.phase("verify");
 
-            Class paper = Class.forName("io.papermc.paper.plugin.manager.PaperPluginManagerImpl");
-            Object paperPluginManagerImpl = paper.getMethod("getInstance").invoke(null);
+        byte[] buffer = new byte[8192];
+        try (JarFile jar = new JarFile(pluginFile, true)) {
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory()) continue;
+                try (InputStream stream = jar.getInputStream(entry)) {
+                    int read;
+                    do read = stream.read(buffer); while (read != -1);
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            e.printStackTrace();
+            timer.fail();
+            return PreparedPlugin.failed(PlugMan.getInstance().getMessageFormatter().format("load.invalid-plugin"));
+        }
+
+        timer.done();
+        return PreparedPlugin.of(pluginFile, description);
+    }
+
+    /**
+     * Loads and enables a prepared plugin, must be called on the main thread.
+     *
+     * @param prepared the prepared plugin
+     * @return status message
+     */
+    public static String commit(PreparedPlugin prepared) {
+        PhaseTimer timer = PlugMan.getInstance().getPhaseTimings().begin("load", prepared.getDescription().getName()).phase("checks");
+        try {
+            return PluginUtil.commit(prepared, timer);
+        } finally {
+            // Only counts if an exception escaped
+            timer.fail();
+        }
+    }
 
-            Field instanceManagerF = paperPluginManagerImpl.getClass().getDeclaredField("instanceManager");
-            instanceManagerF.setAccessible(true);
-            Object instanceManager = instanceManagerF.get(paperPluginManagerImpl);
+    private static String commit(PreparedPlugin prepared, PhaseTimer timer) {
+        Plugin target = null;
+        boolean paperLoaded = false;
+        File pluginFile = prepared.getFile();
 
-            Method loadMethod = instanceManager.getClass().getMethod("loadPlugin", Path.class);
-            loadMethod.setAccessible(true);
-            target = (Plugin) loadMethod.invoke(instanceManager, pluginFile.toPath());
+        Plugin loaded = PluginUtil.getPluginByName(prepared.getDescription().getName());
+        if (loaded != null) {
+            timer.fail();
+            return PlugMan.getInstance().getMessageFormatter().format("load.already-loaded", loaded.getName());
+        }
 
-            Method enableMethod = instanceManager.getClass().getMethod("enablePlugin", Plugin.class);
-            enableMethod.setAccessible(true);
-            enableMethod.invoke(instanceManager, target);
+        List<String> missing = new ArrayList<>();
+        for (String dependency : prepared.getDepend())
+            // Resolves provides as well, like the server does when it loads plugins
+            if (Bukkit.getPluginManager().getPlugin(dependency) == null && PluginUtil.getPluginByName(dependency) == null)
+                missing.add(dependency);
+        if (!missing.isEmpty()) {
+            timer.fail();
+            return PlugMan.getInstance().getMessageFormatter().format("load.missing-dependency", prepared.getDescription().getName(), String.join(", ", missing));
+        }
 
+        ServerAccessors accessors = PlugMan.getInstance().getServerAccessors();
+        if (accessors.hasPaper()) try {
+            timer.phase("classload");
+            target = accessors.paperLoadPlugin(pluginFile.toPath());
+            timer.phase("enable");
+            accessors.paperEnablePlugin(target);
             paperLoaded = true;
-        } catch (Exception ignore) { } // Paper most likely not loaded
+        } catch (Exception ignore) {
+            // Paper refused the plugin, fall back to the Bukkit loader
+            timer.fallback("classload");
+        }
 
         if (!paperLoaded) {
+            if (!accessors.hasPaper()) timer.phase("classload");
             try {
                 target = Bukkit.getPluginManager().loadPlugin(pluginFile);
             } catch (InvalidDescriptionException e) {
                 e.printStackTrace();
+                timer.fail();
                 return PlugMan.getInstance().getMessageFormatter().format("load.invalid-description");
             } catch (InvalidPluginException e) {
                 e.printStackTrace();
+                timer.fail();
                 return PlugMan.getInstance().getMessageFormatter().format("load.invalid-plugin");
             }
 
+            timer.phase("onload");
             target.onLoad();
+            timer.phase("enable");
             Bukkit.getPluginManager().enablePlugin(target);
         }
 
-        if (!(PlugMan.getInstance().getBukkitCommandWrap() instanceof BukkitCommandWrap_Useless)) {
-            Plugin finalTarget = target;
-            Bukkit.getScheduler().runTaskLater(PlugMan.getInstance(), () -> {
-                Map<String, Command> knownCommands = PluginUtil.getKnownCommands();
-                List<Map.Entry<String, Command>> commands = knownCommands.entrySet().stream()
-                        .filter(s -> {
-                            if (s.getKey().contains(":")) {
-                                return s.getKey().split(":")[0].equalsIgnoreCase(finalTarget.getName());
-                            } else {
-                                ClassLoader cl = s.getValue().getClass().getClassLoader();
-                                try {
-                                    return cl.getClass() == pluginClassLoader && pluginClassLoaderPlugin.get(cl) == finalTarget;
-                                } catch (IllegalAccessException e) {
-                                    return false;
-                                }
-                            }
-                        })
-                        .collect(Collectors.toList());
-
-                for (Map.Entry<String, Command> entry : commands) {
-                    String alias = entry.getKey();
-                    Command command = entry.getValue();
-                    PlugMan.getInstance().getBukkitCommandWrap().wrap(command, alias);
-                }
+        timer.phase("register");
 
-                PlugMan.getInstance().getBukkitCommandWrap().sync();
+        if (!(PlugMan.getInstance().getBukkitCommandWrap() instanceof BukkitCommandWrap_Useless))
+            PlugMan.getInstance().getCommandSyncCoalescer().wrapLater(target);
 
-                if (Bukkit.getOnlinePlayers().size() >= 1)
-                    for (Player player : Bukkit.getOnlinePlayers()) player.updateCommands();
-            }, 10L);
+        Map<String, Command> knownCommands = PluginUtil.getKnownCommands();
+        PlugMan.getInstance().getCommandIndex().add(target, knownCommands);
+        PlugMan.getInstance().getCommandIndex().reconcile(knownCommands);
 
-            PlugMan.getInstance().getFilePluginMap().put(pluginFile.getName(), target.getName());
-        }
+        PluginJarEntry entry = PlugMan.getInstance().getPluginJarIndex().refresh(pluginFile);
+        PlugMan.getInstance().getPluginFileStore().put(pluginFile.getName(), entry == null ? null : entry.getHash(), target.getName());
+        PlugMan.getInstance().getPluginInventory().update();
 
+        timer.done();
         return PlugMan.getInstance().getMessageFormatter().format("load.loaded", target.getName());
 
     }
 
     public static Map<String, Command> getKnownCommands() {
-        if (PluginUtil.commandMapField == null) try {
-            PluginUtil.commandMapField = Class.forName("org.bukkit.craftbukkit." + PluginUtil.getNmsVersion() + ".CraftServer").getDeclaredField("commandMap");
-            PluginUtil.commandMapField.setAccessible(true);
-        } catch (NoSuchFieldException | ClassNotFoundException e) {
-            e.printStackTrace();
-            return null;
-        }
-        SimpleCommandMap commandMap;
-        try {
-            commandMap = (SimpleCommandMap) PluginUtil.commandMapField.get(Bukkit.getServer());
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-
-        if (PluginUtil.knownCommandsField == null) try {
-            PluginUtil.knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
-            PluginUtil.knownCommandsField.setAccessible(true);
-        } catch (NoSuchFieldException e) {
-            e.printStackTrace();
-            return null;
-        }
-
-        Map<String, Command> knownCommands;
+        ServerAccessors accessors = PlugMan.getInstance().getServerAccessors();
+        if (!accessors.canReadCommands()) return null;
 
         try {
-            knownCommands = (Map<String, Command>) PluginUtil.knownCommandsField.get(commandMap);
-        } catch (IllegalAccessException e) {
+            return accessors.getKnownCommands(accessors.getServerCommandMap());
+        } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
-
-        return knownCommands;
     }
 
-    private static String getNmsVersion() {
-        if (PluginUtil.nmsVersion == null) try {
-            PluginUtil.nmsVersion = Bukkit.getServer().getClass().getPackage().getName().replace(".", ",").split(",")[3];
-        } catch (ArrayIndexOutOfBoundsException e) {
-            e.printStackTrace();
-            PluginUtil.nmsVersion = null;
-        }
-        return PluginUtil.nmsVersion;
-    }
-
-
     /**
      * Reload a plugin.
      *
@@ -557,18 +631,27 @@ public class PluginUtil {
      */
     public static void reload(Plugin plugin) {
         if (plugin != null) {
-            PluginUtil.unload(plugin);
-            PluginUtil.load(plugin);
+            PhaseTimer timer = PlugMan.getInstance().getPhaseTimings().begin("reload", plugin.getName()).phase("unload");
+            CommandSyncCoalescer commandSyncCoalescer = PlugMan.getInstance().getCommandSyncCoalescer();
+            commandSyncCoalescer.beginBatch();
+            try {
+                PluginUtil.unload(plugin);
+                timer.phase("load");
+                PluginUtil.load(plugin);
+                timer.done();
+            } finally {
+                commandSyncCoalescer.endBatch();
+                // Only counts if an exception escaped
+                timer.fail();
+            }
         }
     }
 
     /**
-     * Reload all plugins.
+     * Reload all plugins in dependency order.
      */
     public static void reloadAll() {
-        for (Plugin plugin : Bukkit.getPluginManager().getPlugins())
-            if (!PluginUtil.isIgnored(plugin))
-                PluginUtil.reload(plugin);
+        PluginBatch.reload(null, PluginUtil.getManagedPlugins()).runAll();
     }
 
     /**
@@ -578,53 +661,39 @@ public class PluginUtil {
      * @return the message to send to the user.
      */
     public static String unload(Plugin plugin) {
+        return PluginUtil.unload(plugin, true);
+    }
+
+    /**
+     * Unload a plugin.
+     *
+     * @param plugin  the plugin to unload
+     * @param cleanup whether to run the cleanup pass, batches run it once at the end instead
+     * @return the message to send to the user.
+     */
+    static String unload(Plugin plugin, boolean cleanup) {
+        PhaseTimer timer = PlugMan.getInstance().getPhaseTimings().begin("unload", plugin.getName());
+        try {
+            return PluginUtil.unload(plugin, cleanup, timer);
+        } finally {
+            // Only counts if an exception escaped
+            timer.fail();
+        }
+    }
+
+    private static String unload(Plugin plugin, boolean cleanup, PhaseTimer timer) {
         String name = plugin.getName();
 
         if (!PlugManAPI.getGentleUnloads().containsKey(plugin)) {
+            timer.phase("commands");
             if (!(PlugMan.getInstance().getBukkitCommandWrap() instanceof BukkitCommandWrap_Useless)) {
-                Map<String, Command> knownCommands = PluginUtil.getKnownCommands();
-                List<Map.Entry<String, Command>> commands = knownCommands.entrySet().stream()
-                        .filter(s -> {
-                            if (s.getKey().contains(":")) {
-                                return s.getKey().split(":")[0].equalsIgnoreCase(plugin.getName());
-                            } else {
-                                ClassLoader cl = s.getValue().getClass().getClassLoader();
-                                try {
-                                    return cl.getClass() == pluginClassLoader && pluginClassLoaderPlugin.get(cl) == plugin;
-                                } catch (IllegalAccessException e) {
-                                    return false;
-                                }
-                            }
-                        })
-                        .collect(Collectors.toList());
-
-                for (Map.Entry<String, Command> entry : commands) {
-                    String alias = entry.getKey();
-                    PlugMan.getInstance().getBukkitCommandWrap().unwrap(alias);
-                }
-
-                for (Map.Entry<String, Command> entry : knownCommands.entrySet().stream().filter(stringCommandEntry -> Plugin.class.isAssignableFrom(stringCommandEntry.getValue().getClass())).filter(stringCommandEntry -> {
-                    Field pluginField = Arrays.stream(stringCommandEntry.getValue().getClass().getDeclaredFields()).filter(field -> Plugin.class.isAssignableFrom(field.getType())).findFirst().orElse(null);
-                    if (pluginField != null) {
-                        Plugin owningPlugin;
-                        try {
-                            owningPlugin = (Plugin) pluginField.get(stringCommandEntry.getValue());
-                            return owningPlugin.getName().equalsIgnoreCase(plugin.getName());
-                        } catch (IllegalAccessException e) {
-                            e.printStackTrace();
-                        }
-                    }
+                CommandSyncCoalescer commandSyncCoalescer = PlugMan.getInstance().getCommandSyncCoalescer();
+                commandSyncCoalescer.cancelWrap(plugin);
 
-                    return false;
-                }).collect(Collectors.toList())) {
-                    String alias = entry.getKey();
+                for (String alias : PluginUtil.getCommandKeys(plugin))
                     PlugMan.getInstance().getBukkitCommandWrap().unwrap(alias);
-                }
-
-                PlugMan.getInstance().getBukkitCommandWrap().sync();
 
-                if (Bukkit.getOnlinePlayers().size() >= 1)
-                    for (Player player : Bukkit.getOnlinePlayers()) player.updateCommands();
+                commandSyncCoalescer.markDirty();
             }
 
             PluginManager pluginManager = Bukkit.getPluginManager();
@@ -641,106 +710,101 @@ public class PluginUtil {
 
             if (pluginManager != null) {
 
+                timer.phase("disable");
                 pluginManager.disablePlugin(plugin);
 
+                timer.phase("reflection");
+                ServerAccessors accessors = PlugMan.getInstance().getServerAccessors();
                 try {
 
-                    Field pluginsField = Bukkit.getPluginManager().getClass().getDeclaredField("plugins");
-                    pluginsField.setAccessible(true);
-                    plugins = (List<Plugin>) pluginsField.get(pluginManager);
+                    plugins = accessors.getPlugins(pluginManager);
+                    names = accessors.getLookupNames(pluginManager);
 
-                    Field lookupNamesField = Bukkit.getPluginManager().getClass().getDeclaredField("lookupNames");
-                    lookupNamesField.setAccessible(true);
-                    names = (Map<String, Plugin>) lookupNamesField.get(pluginManager);
+                    if (accessors.canReloadListeners()) listeners = accessors.getListeners(pluginManager);
+                    else reloadlisteners = false;
 
-                    try {
-                        Field listenersField = Bukkit.getPluginManager().getClass().getDeclaredField("listeners");
-                        listenersField.setAccessible(true);
-                        listeners = (Map<Event, SortedSet<RegisteredListener>>) listenersField.get(pluginManager);
-                    } catch (Exception e) {
-                        reloadlisteners = false;
-                    }
-
-                    Field commandMapField = Bukkit.getPluginManager().getClass().getDeclaredField("commandMap");
-                    commandMapField.setAccessible(true);
-                    commandMap = (SimpleCommandMap) commandMapField.get(pluginManager);
-
-                    Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
-                    knownCommandsField.setAccessible(true);
-                    commands = (Map<String, Command>) knownCommandsField.get(commandMap);
+                    commandMap = accessors.getCommandMap(pluginManager);
+                    commands = accessors.getKnownCommands(commandMap);
 
-                } catch (NoSuchFieldException | IllegalAccessException e) {
+                } catch (Exception e) {
                     e.printStackTrace();
+                    timer.fail();
                     return PlugMan.getInstance().getMessageFormatter().format("unload.failed", name);
                 }
 
             }
 
+            timer.phase("listeners");
+            // Disabling the plugin already unregistered its listeners from every HandlerList
             pluginManager.disablePlugin(plugin);
 
+            // Only servers that predate HandlerList keep this map
             if (listeners != null && reloadlisteners)
                 for (SortedSet<RegisteredListener> set : listeners.values())
                     set.removeIf(value -> value.getPlugin() == plugin);
 
-            if (commandMap != null)
-                for (Iterator<Map.Entry<String, Command>> it = commands.entrySet().iterator(); it.hasNext(); ) {
-                    Map.Entry<String, Command> entry = it.next();
-                    if (entry.getValue() instanceof PluginCommand) {
-                        PluginCommand c = (PluginCommand) entry.getValue();
-                        if (c.getPlugin() == plugin) {
-                            c.unregister(commandMap);
-                            it.remove();
-                        }
-                    } else try {
-                        Field pluginField = Arrays.stream(entry.getValue().getClass().getDeclaredFields()).filter(field -> Plugin.class.isAssignableFrom(field.getType())).findFirst().orElse(null);
-                        if (pluginField != null) {
-                            Plugin owningPlugin;
-                            try {
-                                pluginField.setAccessible(true);
-                                owningPlugin = (Plugin) pluginField.get(entry.getValue());
-                                if (owningPlugin.getName().equalsIgnoreCase(plugin.getName())) {
-                                    entry.getValue().unregister(commandMap);
-                                    it.remove();
-                                }
-                            } catch (IllegalAccessException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    } catch (IllegalStateException e) {
-                        if (e.getMessage().equalsIgnoreCase("zip file closed")) {
-                            if (PlugMan.getInstance().isNotifyOnBrokenCommandRemoval())
-                                Logger.getLogger(PluginUtil.class.getName()).info("Removing broken command '" + entry.getValue().getName() + "'!");
-                            entry.getValue().unregister(commandMap);
-                            it.remove();
-                        }
+            // A single pass to verify nothing registered a listener for the plugin while it was being disabled
+            int leftovers = 0;
+            for (HandlerList handlerList : HandlerList.getHandlerLists())
+                for (RegisteredListener listener : handlerList.getRegisteredListeners())
+                    if (listener.getPlugin() == plugin) {
+                        handlerList.unregister(listener);
+                        leftovers++;
                     }
+            if (leftovers > 0)
+                Logger.getLogger(PluginUtil.class.getName()).warning("Removed " + leftovers + " listener(s) of " + name + " that were still registered after disabling it!");
+
+            timer.phase("command-map");
+            if (commandMap != null) {
+                CommandIndex commandIndex = PlugMan.getInstance().getCommandIndex();
+                commandIndex.build(commands);
+                commandIndex.reconcile(commands);
+
+                for (String key : commandIndex.getKeys(plugin)) {
+                    Command command = commands.remove(key);
+                    if (command != null) command.unregister(commandMap);
+                }
+
+                for (String key : commandIndex.getBrokenKeys()) {
+                    Command command = commands.remove(key);
+                    if (command == null) continue;
+                    if (PlugMan.getInstance().isNotifyOnBrokenCommandRemoval())
+                        Logger.getLogger(PluginUtil.class.getName()).info("Removing broken command '" + command.getName() + "'!");
+                    command.unregister(commandMap);
+                    commandIndex.remove(key);
                 }
 
+                commandIndex.remove(plugin);
+            }
+
             if (plugins != null && plugins.contains(plugin))
                 plugins.remove(plugin);
 
             if (names != null && names.containsKey(name))
                 names.remove(name);
+
+            PlugMan.getInstance().getPluginInventory().update();
         } else {
+            timer.phase("gentle-unload");
             GentleUnload gentleUnload = PlugManAPI.getGentleUnloads().get(plugin);
-            if (!gentleUnload.askingForGentleUnload())
+            if (!gentleUnload.askingForGentleUnload()) {
+                timer.fail();
                 return name + "did not want to unload";
+            }
         }
 
+        timer.phase("classloader");
+
         // Attempt to close the classloader to unlock any handles on the plugin's jar file.
         ClassLoader cl = plugin.getClass().getClassLoader();
-        if (cl instanceof URLClassLoader) {
-            try {
-
-                Field pluginField = cl.getClass().getDeclaredField("plugin");
-                pluginField.setAccessible(true);
-                pluginField.set(cl, null);
 
-                Field pluginInitField = cl.getClass().getDeclaredField("pluginInit");
-                pluginInitField.setAccessible(true);
-                pluginInitField.set(cl, null);
+        LeakTracker leakTracker = PlugMan.getInstance().getLeakTracker();
+        if (leakTracker != null) leakTracker.track(name, cl);
 
-            } catch (NoSuchFieldException | SecurityException | IllegalArgumentException | IllegalAccessException ex) {
+        if (cl instanceof URLClassLoader) {
+            try {
+                PlugMan.getInstance().getServerAccessors().clearClassLoader(cl);
+            } catch (Exception ex) {
                 Logger.getLogger(PluginUtil.class.getName()).log(Level.SEVERE, null, ex);
             }
 
@@ -753,37 +817,37 @@ public class PluginUtil {
 
         }
 
-        try {
-
-            Class paper = Class.forName("io.papermc.paper.plugin.manager.PaperPluginManagerImpl");
-            Object paperPluginManagerImpl = paper.getMethod("getInstance").invoke(null);
-
-            Field instanceManagerF = paperPluginManagerImpl.getClass().getDeclaredField("instanceManager");
-            instanceManagerF.setAccessible(true);
-            Object instanceManager = instanceManagerF.get(paperPluginManagerImpl);
-
-            Field lookupNamesF = instanceManager.getClass().getDeclaredField("lookupNames");
-            lookupNamesF.setAccessible(true);
-            Map<String, Object> lookupNames = (Map<String, Object>) lookupNamesF.get(instanceManager);
-
-            Method disableMethod = instanceManager.getClass().getMethod("disablePlugin", Plugin.class);
-            disableMethod.setAccessible(true);
-            disableMethod.invoke(instanceManager, plugin);
+        ServerAccessors accessors = PlugMan.getInstance().getServerAccessors();
+        if (accessors.hasPaper()) try {
+            timer.phase("paper");
+            accessors.paperDisablePlugin(plugin);
+            accessors.getPaperLookupNames().remove(plugin.getName().toLowerCase());
+            accessors.getPaperPlugins().remove(plugin);
+        } catch (Exception e) {
+            // Paper still lists the plugin, it is gone from Bukkit so the cleanup runs anyway
+            e.printStackTrace();
+            timer.fail();
+            if (cleanup) PluginUtil.cleanup();
+            return PlugMan.getInstance().getMessageFormatter().format("unload.failed", name);
+        }
 
-            lookupNames.remove(plugin.getName().toLowerCase());
+        timer.done();
 
-            Field pluginListF = instanceManager.getClass().getDeclaredField("plugins");
-            pluginListF.setAccessible(true);
-            List<Plugin> pluginList = (List<Plugin>) pluginListF.get(instanceManager);
-            pluginList.remove(plugin);
+        if (cleanup) PluginUtil.cleanup();
 
-        } catch (Exception ignore) { } // Paper most likely not loaded
+        return PlugMan.getInstance().getMessageFormatter().format("unload.unloaded", name);
 
-        // Will not work on processes started with the -XX:+DisableExplicitGC flag, but lets try it anyway.
-        // This tries to get around the issue where Windows refuses to unlock jar files that were previously loaded into the JVM.
-        System.gc();
+    }
 
-        return PlugMan.getInstance().getMessageFormatter().format("unload.unloaded", name);
+    /**
+     * Release what unloaded plugins left behind.
+     */
+    static void cleanup() {
+        ReclamationPolicy reclamationPolicy = PlugMan.getInstance().getReclamationPolicy();
+        if (!reclamationPolicy.shouldReclaim()) return;
 
+        PhaseTimer timer = PlugMan.getInstance().getPhaseTimings().begin("reclaim", null).phase("gc");
+        reclamationPolicy.reclaim(PlugMan.getInstance().getLogger());
+        timer.done();
     }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes the metrics PlugMan collected to a file in the Prometheus text exposition format, for the node
+ * exporter textfile collector.
+ * <p>
+ * The file is written next to its destination and renamed over it, so a scrape never sees a half written file.
+ * Only uses the JDK, so the Bukkit and the Bungee side share it.
+ */
+public class PrometheusExporter {
+
+    /**
+     * The quantiles exported for every latency histogram.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * The metrics to export.
+     */
+    private final PlugManMetrics metrics;
+
+    /**
+     * The file to write.
+     */
+    private final File file;
+
+    /**
+     * Construct the object.
+     *
+     * @param metrics the metrics to export.
+     * @param file    the file to write.
+     */
+    public PrometheusExporter(PlugManMetrics metrics, File file) {
+        this.metrics = metrics;
+        this.file = file;
+    }
+
+    /**
+     * Write the current metrics to the file, replacing it atomically.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void export() throws IOException {
+        Path target = this.file.toPath();
+        Path temp = target.resolveSibling(this.file.getName() + ".tmp");
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(this.format());
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Format the current metrics.
+     *
+     * @return the metrics in the Prometheus text exposition format.
+     */
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        MetricsRegistry metricsRegistry = this.metrics.getMetricsRegistry();
+
+        Map<String, Boolean> plugins = this.metrics.getPlugins();
+        builder.append("# HELP plugman_plugin_enabled Whether a plugin is enabled.\n");
+        builder.append("# TYPE plugman_plugin_enabled gauge\n");
+        for (Map.Entry<String, Boolean> entry : plugins.entrySet())
+            builder.append("plugman_plugin_enabled{plugin=\"").append(PrometheusExporter.escape(entry.getKey())).append("\"} ").append(entry.getValue() ? 1 : 0).append('\n');
+
+        Map<String, LatencyHistogram> histograms = metricsRegistry.getHistograms();
+        if (!histograms.isEmpty()) {
+            builder.append("# HELP plugman_operation_seconds How long PlugMan operations took.\n");
+            builder.append("# TYPE plugman_operation_seconds summary\n");
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+                String operation = PrometheusExporter.escape(entry.getKey());
+                LatencyHistogram histogram = entry.getValue();
+                for (double quantile : QUANTILES)
+                    builder.append("plugman_operation_seconds{operation=\"").append(operation).append("\",quantile=\"").append(quantile).append("\"} ")
+                            .append(PrometheusExporter.toSeconds(histogram.getQuantile(quantile))).append('\n');
+                builder.append("plugman_operation_seconds_sum{operation=\"").append(operation).append("\"} ").append(PrometheusExporter.toSeconds(histogram.getSum())).append('\n');
+                builder.append("plugman_operation_seconds_count{operation=\"").append(operation).append("\"} ").append(histogram.getCount()).append('\n');
+            }
+
+            builder.append("# HELP plugman_operation_max_seconds How long the slowest run of a PlugMan operation took.\n");
+            builder.append("# TYPE plugman_operation_max_seconds gauge\n");
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+                builder.append("plugman_operation_max_seconds{operation=\"").append(PrometheusExporter.escape(entry.getKey())).append("\"} ")
+                        .append(PrometheusExporter.toSeconds(entry.getValue().getMax())).append('\n');
+        }
+
+        for (Map.Entry<String, LongAdder> entry : metricsRegistry.getCounters().entrySet()) {
+            String name = "plugman_" + PrometheusExporter.sanitize(entry.getKey()) + "_total";
+            builder.append("# TYPE ").append(name).append(" counter\n");
+            builder.append(name).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+
+        for (Map.Entry<String, Long> entry : metricsRegistry.getGauges().entrySet()) {
+            String name = "plugman_" + PrometheusExporter.sanitize(entry.getKey());
+            builder.append("# TYPE ").append(name).append(" gauge\n");
+            builder.append(name).append(' ').append(entry.getValue()).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private static String sanitize(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String toSeconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1_000_000_000.0);
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * When to force a garbage collection after plugins were unloaded.
+ * <p>
+ * A forced collection is a full stop-the-world pause. It is only needed to release file handles of unloaded
+ * jars, which matters on Windows where open jars cannot be replaced.
+ */
+public enum ReclamationPolicy {
+
+    /**
+     * Never force a collection.
+     */
+    NEVER,
+
+    /**
+     * Force one collection after every unload or batch of unloads.
+     */
+    BATCH,
+
+    /**
+     * Force one collection after every unload or batch of unloads, but only on platforms that lock open files.
+     */
+    PLATFORM;
+
+    /**
+     * Parse a policy from its name.
+     *
+     * @param value        the name of the policy, case insensitive.
+     * @param defaultValue the policy to use if the name is unknown.
+     * @return the policy.
+     */
+    public static ReclamationPolicy parse(String value, ReclamationPolicy defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return ReclamationPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Whether this policy forces a collection on the current platform.
+     *
+     * @return whether a collection will be forced.
+     */
+    public boolean shouldReclaim() {
+        switch (this) {
+            case BATCH:
+                return true;
+            case PLATFORM:
+                return System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Force a collection if the policy asks for one and log the pause and the reclaimed heap.
+     *
+     * @param logger the logger to report to.
+     */
+    public void reclaim(Logger logger) {
+        if (!this.shouldReclaim()) return;
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long usedBefore = memory.getHeapMemoryUsage().getUsed();
+        long collectionsBefore = ReclamationPolicy.getCollectionCount();
+        long collectionTimeBefore = ReclamationPolicy.getCollectionTime();
+        long start = System.nanoTime();
+
+        // Will not work on processes started with the -XX:+DisableExplicitGC flag, but lets try it anyway.
+        // This tries to get around the issue where Windows refuses to unlock jar files that were previously loaded into the JVM.
+        System.gc();
+
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+        if (ReclamationPolicy.getCollectionCount() == collectionsBefore) {
+            logger.info("Requested a garbage collection after unloading, but none ran (explicit GC is probably disabled)");
+            return;
+        }
+
+        long pauseMillis = ReclamationPolicy.getCollectionTime() - collectionTimeBefore;
+        long reclaimed = usedBefore - memory.getHeapMemoryUsage().getUsed();
+        logger.log(Level.INFO, String.format(Locale.ROOT, "Reclaimed %.1f MB of heap after unloading, collection took %d ms (%d ms wall time, policy %s)",
+                reclaimed / 1048576.0, pauseMillis, wallMillis, this.name().toLowerCase(Locale.ROOT)));
+    }
+
+    private static long getCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, bean.getCollectionCount());
+        return count;
+    }
+
+    private static long getCollectionTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            time += Math.max(0, bean.getCollectionTime());
+        return time;
+    }
+
+}
@@ -0,0 +1,441 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.event.Event;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Server internals PlugMan needs to load and unload plugins, resolved once into method handles.
+ * <p>
+ * Every accessor that cannot be resolved is left null and reported through the capability flags, so callers
+ * can skip the matching step instead of failing halfway through an unload.
+ */
+public class ServerAccessors {
+
+    /**
+     * The lookup used to turn reflected members into method handles.
+     */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * SimplePluginManager#plugins.
+     */
+    private final MethodHandle pluginsGetter;
+
+    /**
+     * SimplePluginManager#lookupNames.
+     */
+    private final MethodHandle lookupNamesGetter;
+
+    /**
+     * SimplePluginManager#listeners, missing on most modern servers.
+     */
+    private final MethodHandle listenersGetter;
+
+    /**
+     * SimplePluginManager#commandMap.
+     */
+    private final MethodHandle pluginManagerCommandMapGetter;
+
+    /**
+     * CraftServer#commandMap.
+     */
+    private final MethodHandle serverCommandMapGetter;
+
+    /**
+     * SimpleCommandMap#knownCommands.
+     */
+    private final MethodHandle knownCommandsGetter;
+
+    /**
+     * PluginClassLoader#plugin and PluginClassLoader#pluginInit, kept as fields since both are final.
+     */
+    private final Field classLoaderPluginField;
+    private final Field classLoaderPluginInitField;
+
+    /**
+     * PluginClassLoader#classes, every class the loader defined by name.
+     */
+    private final MethodHandle classLoaderClassesGetter;
+
+    /**
+     * The Paper plugin instance manager, null when not running on Paper.
+     */
+    private final Object paperInstanceManager;
+
+    /**
+     * The Paper instance manager's loadPlugin, enablePlugin and disablePlugin methods.
+     */
+    private final MethodHandle paperLoadPlugin;
+    private final MethodHandle paperEnablePlugin;
+    private final MethodHandle paperDisablePlugin;
+
+    /**
+     * The Paper instance manager's lookupNames and plugins fields.
+     */
+    private final MethodHandle paperLookupNamesGetter;
+    private final MethodHandle paperPluginsGetter;
+
+    /**
+     * How long resolving all accessors took, in nanoseconds.
+     */
+    private final long resolveNanos;
+
+    private ServerAccessors() {
+        long start = System.nanoTime();
+
+        Class<?> pluginManagerClass = Bukkit.getPluginManager().getClass();
+        this.pluginsGetter = ServerAccessors.getter(pluginManagerClass, "plugins");
+        this.lookupNamesGetter = ServerAccessors.getter(pluginManagerClass, "lookupNames");
+        this.listenersGetter = ServerAccessors.getter(pluginManagerClass, "listeners");
+        this.pluginManagerCommandMapGetter = ServerAccessors.getter(pluginManagerClass, "commandMap");
+        this.serverCommandMapGetter = ServerAccessors.getter(Bukkit.getServer().getClass(), "commandMap");
+        this.knownCommandsGetter = ServerAccessors.getter(SimpleCommandMap.class, "knownCommands");
+
+        Class<?> pluginClassLoader = ServerAccessors.findClass("org.bukkit.plugin.java.PluginClassLoader");
+        this.classLoaderPluginField = pluginClassLoader == null ? null : ServerAccessors.findField(pluginClassLoader, "plugin");
+        this.classLoaderPluginInitField = pluginClassLoader == null ? null : ServerAccessors.findField(pluginClassLoader, "pluginInit");
+        this.classLoaderClassesGetter = ServerAccessors.getter(pluginClassLoader, "classes");
+
+        Object instanceManager = null;
+        Class<?> paper = ServerAccessors.findClass("io.papermc.paper.plugin.manager.PaperPluginManagerImpl");
+        if (paper != null) try {
+            Object paperPluginManagerImpl = paper.getMethod("getInstance").invoke(null);
+            Field instanceManagerField = paperPluginManagerImpl.getClass().getDeclaredField("instanceManager");
+            instanceManagerField.setAccessible(true);
+            instanceManager = instanceManagerField.get(paperPluginManagerImpl);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+        }
+
+        Class<?> instanceManagerClass = instanceManager == null ? null : instanceManager.getClass();
+        this.paperLoadPlugin = ServerAccessors.method(instanceManagerClass, "loadPlugin", Path.class);
+        this.paperEnablePlugin = ServerAccessors.method(instanceManagerClass, "enablePlugin", Plugin.class);
+        this.paperDisablePlugin = ServerAccessors.method(instanceManagerClass, "disablePlugin", Plugin.class);
+        this.paperLookupNamesGetter = ServerAccessors.getter(instanceManagerClass, "lookupNames");
+        this.paperPluginsGetter = ServerAccessors.getter(instanceManagerClass, "plugins");
+        this.paperInstanceManager = this.paperLoadPlugin == null ? null : instanceManager;
+
+        this.resolveNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Resolve all accessors against the running server.
+     *
+     * @return the accessors.
+     */
+    public static ServerAccessors resolve() {
+        return new ServerAccessors();
+    }
+
+    /**
+     * Whether the plugin manager and command map internals needed to unload a plugin were found.
+     *
+     * @return whether plugins can be unloaded.
+     */
+    public boolean canUnload() {
+        return this.pluginsGetter != null && this.lookupNamesGetter != null && this.pluginManagerCommandMapGetter != null && this.knownCommandsGetter != null;
+    }
+
+    /**
+     * Whether the plugin manager keeps its own listener map that has to be cleaned up on unload.
+     *
+     * @return whether listeners can be removed through the plugin manager.
+     */
+    public boolean canReloadListeners() {
+        return this.listenersGetter != null;
+    }
+
+    /**
+     * Whether the server command map could be found.
+     *
+     * @return whether the known commands can be read.
+     */
+    public boolean canReadCommands() {
+        return this.serverCommandMapGetter != null && this.knownCommandsGetter != null;
+    }
+
+    /**
+     * Whether the class loader fields holding on to a plugin can be cleared.
+     *
+     * @return whether plugin class loaders can be cleared.
+     */
+    public boolean canClearClassLoader() {
+        return this.classLoaderPluginField != null && this.classLoaderPluginInitField != null;
+    }
+
+    /**
+     * Whether the classes defined by a plugin class loader can be listed.
+     *
+     * @return whether plugin classes can be listed.
+     */
+    public boolean canListPluginClasses() {
+        return this.classLoaderClassesGetter != null;
+    }
+
+    /**
+     * Whether the server runs Paper's plugin manager.
+     *
+     * @return whether Paper is present.
+     */
+    public boolean hasPaper() {
+        return this.paperInstanceManager != null;
+    }
+
+    /**
+     * Get how long resolving all accessors took.
+     *
+     * @return the resolution time in nanoseconds.
+     */
+    public long getResolveNanos() {
+        return this.resolveNanos;
+    }
+
+    /**
+     * Get the list of loaded plugins.
+     *
+     * @param pluginManager the plugin manager.
+     * @return the live list of plugins.
+     * @throws Exception if the field could not be read.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Plugin> getPlugins(PluginManager pluginManager) throws Exception {
+        return (List<Plugin>) ServerAccessors.invoke(this.pluginsGetter, pluginManager);
+    }
+
+    /**
+     * Get the plugins by lookup name.
+     *
+     * @param pluginManager the plugin manager.
+     * @return the live lookup map.
+     * @throws Exception if the field could not be read.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Plugin> getLookupNames(PluginManager pluginManager) throws Exception {
+        return (Map<String, Plugin>) ServerAccessors.invoke(this.lookupNamesGetter, pluginManager);
+    }
+
+    /**
+     * Get the listeners the plugin manager keeps by event.
+     *
+     * @param pluginManager the plugin manager.
+     * @return the live listener map.
+     * @throws Exception if the field could not be read.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Event, SortedSet<RegisteredListener>> getListeners(PluginManager pluginManager) throws Exception {
+        return (Map<Event, SortedSet<RegisteredListener>>) ServerAccessors.invoke(this.listenersGetter, pluginManager);
+    }
+
+    /**
+     * Get the command map of the plugin manager.
+     *
+     * @param pluginManager the plugin manager.
+     * @return the command map.
+     * @throws Exception if the field could not be read.
+     */
+    public SimpleCommandMap getCommandMap(PluginManager pluginManager) throws Exception {
+        return (SimpleCommandMap) ServerAccessors.invoke(this.pluginManagerCommandMapGetter, pluginManager);
+    }
+
+    /**
+     * Get the command map of the server.
+     *
+     * @return the command map.
+     * @throws Exception if the field could not be read.
+     */
+    public SimpleCommandMap getServerCommandMap() throws Exception {
+        return (SimpleCommandMap) ServerAccessors.invoke(this.serverCommandMapGetter, Bukkit.getServer());
+    }
+
+    /**
+     * Get the known commands of a command map.
+     *
+     * @param commandMap the command map.
+     * @return the live map of known commands.
+     * @throws Exception if the field could not be read.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Command> getKnownCommands(SimpleCommandMap commandMap) throws Exception {
+        return (Map<String, Command>) ServerAccessors.invoke(this.knownCommandsGetter, commandMap);
+    }
+
+    /**
+     * Drop the references a plugin class loader holds to its plugin.
+     *
+     * @param classLoader the plugin class loader.
+     * @throws Exception if the fields could not be set.
+     */
+    public void clearClassLoader(ClassLoader classLoader) throws Exception {
+        if (!this.canClearClassLoader()) throw new UnsupportedOperationException("Accessor not available on this server");
+        this.classLoaderPluginField.set(classLoader, null);
+        this.classLoaderPluginInitField.set(classLoader, null);
+    }
+
+    /**
+     * Get the classes a plugin class loader defined.
+     *
+     * @param classLoader the plugin class loader.
+     * @return the live map of classes by name.
+     * @throws Exception if the field could not be read.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Class<?>> getPluginClasses(ClassLoader classLoader) throws Exception {
+        return (Map<String, Class<?>>) ServerAccessors.invoke(this.classLoaderClassesGetter, classLoader);
+    }
+
+    /**
+     * Load a plugin through Paper's plugin manager.
+     *
+     * @param path the path of the jar.
+     * @return the loaded plugin.
+     * @throws Exception if Paper is missing or failed to load the plugin.
+     */
+    public Plugin paperLoadPlugin(Path path) throws Exception {
+        return (Plugin) ServerAccessors.invoke(this.paperLoadPlugin, this.paperInstanceManager, path);
+    }
+
+    /**
+     * Enable a plugin through Paper's plugin manager.
+     *
+     * @param plugin the plugin.
+     * @throws Exception if Paper is missing or failed to enable the plugin.
+     */
+    public void paperEnablePlugin(Plugin plugin) throws Exception {
+        ServerAccessors.invoke(this.paperEnablePlugin, this.paperInstanceManager, plugin);
+    }
+
+    /**
+     * Disable a plugin through Paper's plugin manager.
+     *
+     * @param plugin the plugin.
+     * @throws Exception if Paper is missing or failed to disable the plugin.
+     */
+    public void paperDisablePlugin(Plugin plugin) throws Exception {
+        ServerAccessors.invoke(this.paperDisablePlugin, this.paperInstanceManager, plugin);
+    }
+
+    /**
+     * Get the plugins by lookup name inside Paper's plugin manager.
+     *
+     * @return the live lookup map.
+     * @throws Exception if Paper is missing.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getPaperLookupNames() throws Exception {
+        return (Map<String, Object>) ServerAccessors.invoke(this.paperLookupNamesGetter, this.paperInstanceManager);
+    }
+
+    /**
+     * Get the plugins inside Paper's plugin manager.
+     *
+     * @return the live list of plugins.
+     * @throws Exception if Paper is missing.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Plugin> getPaperPlugins() throws Exception {
+        return (List<Plugin>) ServerAccessors.invoke(this.paperPluginsGetter, this.paperInstanceManager);
+    }
+
+    private static Object invoke(MethodHandle handle, Object target) throws Exception {
+        if (handle == null) throw new UnsupportedOperationException("Accessor not available on this server");
+        try {
+            return handle.invoke(target);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    private static Object invoke(MethodHandle handle, Object target, Object argument) throws Exception {
+        if (handle == null) throw new UnsupportedOperationException("Accessor not available on this server");
+        try {
+            return handle.invoke(target, argument);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    private static Class<?> findClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Field findField(Class<?> owner, String name) {
+        for (Class<?> clazz = owner; clazz != null; clazz = clazz.getSuperclass()) try {
+            Field field = clazz.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException ignored) {
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static MethodHandle getter(Class<?> owner, String name) {
+        Field field = owner == null ? null : ServerAccessors.findField(owner, name);
+        if (field == null) return null;
+        try {
+            return ServerAccessors.LOOKUP.unreflectGetter(field);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle method(Class<?> owner, String name, Class<?>... parameterTypes) {
+        if (owner == null) return null;
+        try {
+            Method method = owner.getMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return ServerAccessors.LOOKUP.unreflect(method);
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+}
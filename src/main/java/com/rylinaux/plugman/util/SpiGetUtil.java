@@ -26,6 +26,7 @@ package com.rylinaux.plugman.util;
  * #L%
  */
 
+import com.rylinaux.plugman.PlugMan;
 import com.rylinaux.plugman.pojo.UpdateResult;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpResponse;
@@ -151,8 +152,10 @@ public class SpiGetUtil {
 
         try {
 
+            long start = System.nanoTime();
             HttpResponse response = client.execute(get);
             String body = IOUtils.toString(response.getEntity().getContent());
+            PlugMan.getInstance().getMetricsRegistry().histogram("update.spiget").record(System.nanoTime() - start);
 
             Object object = JSONValue.parse(body);
 
@@ -172,6 +175,7 @@ public class SpiGetUtil {
 
         } catch (IOException e) {
             e.printStackTrace();
+            PlugMan.getInstance().getMetricsRegistry().counter("update.spiget.failed").increment();
         }
 
         return -1;
@@ -193,13 +197,16 @@ public class SpiGetUtil {
 
         try {
 
+            long start = System.nanoTime();
             HttpResponse response = client.execute(get);
             String body = IOUtils.toString(response.getEntity().getContent());
+            PlugMan.getInstance().getMetricsRegistry().histogram("update.spiget").record(System.nanoTime() - start);
 
             return (JSONArray) JSONValue.parse(body);
 
         } catch (IOException e) {
             e.printStackTrace();
+            PlugMan.getInstance().getMetricsRegistry().counter("update.spiget.failed").increment();
         }
 
         return null;
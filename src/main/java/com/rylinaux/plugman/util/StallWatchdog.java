@@ -0,0 +1,212 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+/**
+ * Reports PlugMan operations that block the main thread, e.g. a plugin hanging in onEnable or onDisable.
+ * <p>
+ * Every {@link PhaseTimer} started on the main thread is watched. Once its running phase exceeds the threshold,
+ * the plugin, operation and phase are logged together with the main thread stack, and again every interval
+ * until the phase ends. The bulk operation the phase belongs to and the queued ones can be aborted so a stuck
+ * server does not go on to the next plugin once the stuck one returns, plugins it already stopped are still
+ * brought back up. A timer the main thread never ended, e.g. because an exception escaped, is dropped as soon
+ * as the server ticks again since an operation never spans two ticks.
+ */
+public class StallWatchdog {
+
+    /**
+     * How often the watched operation is checked, in milliseconds.
+     */
+    private static final long CHECK_INTERVAL = 100L;
+
+    /**
+     * The instance of PlugMan.
+     */
+    private final PlugMan plugMan;
+
+    /**
+     * How long a phase may block the main thread before it is reported, in nanoseconds.
+     */
+    private final long thresholdNanos;
+
+    /**
+     * The time between two reports of the same stall, in nanoseconds.
+     */
+    private final long intervalNanos;
+
+    /**
+     * Whether the stalled and queued bulk operations are aborted.
+     */
+    private final boolean abortQueued;
+
+    /**
+     * The innermost operation running on the main thread, null if none is.
+     */
+    private final AtomicReference<PhaseTimer> watched = new AtomicReference<>();
+
+    /**
+     * The main thread.
+     */
+    private Thread mainThread = null;
+
+    /**
+     * The thread checking the watched operation, null if not running.
+     */
+    private Thread watchdogThread = null;
+
+    /**
+     * The task updating {@link #lastTick}, null if not running.
+     */
+    private BukkitTask heartbeatTask = null;
+
+    /**
+     * When the main thread last ran a tick, from {@link System#nanoTime()}.
+     */
+    private volatile long lastTick = System.nanoTime();
+
+    /**
+     * Construct the object.
+     *
+     * @param plugMan         the instance of PlugMan.
+     * @param thresholdMillis how long a phase may block the main thread before it is reported, in milliseconds.
+     * @param intervalMillis  the time between two reports of the same stall, in milliseconds.
+     * @param abortQueued     whether the stalled and queued bulk operations are aborted.
+     */
+    public StallWatchdog(PlugMan plugMan, long thresholdMillis, long intervalMillis, boolean abortQueued) {
+        this.plugMan = plugMan;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, thresholdMillis));
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervalMillis));
+        this.abortQueued = abortQueued;
+    }
+
+    /**
+     * Start watching, must be called on the main thread.
+     */
+    public void start() {
+        this.mainThread = Thread.currentThread();
+        this.heartbeatTask = Bukkit.getScheduler().runTaskTimer(this.plugMan, () -> this.lastTick = System.nanoTime(), 1L, 1L);
+
+        this.watchdogThread = new Thread(this::watch, "PlugMan Stall Watchdog");
+        this.watchdogThread.setDaemon(true);
+        this.watchdogThread.start();
+    }
+
+    /**
+     * Stop watching.
+     */
+    public void stop() {
+        if (this.heartbeatTask != null) this.heartbeatTask.cancel();
+        this.heartbeatTask = null;
+
+        if (this.watchdogThread != null) this.watchdogThread.interrupt();
+        this.watchdogThread = null;
+        this.watched.set(null);
+    }
+
+    /**
+     * Watch an operation that just started.
+     *
+     * @param timer the timer of the operation.
+     */
+    void enter(PhaseTimer timer) {
+        if (Thread.currentThread() != this.mainThread) return;
+        timer.setOuter(this.watched.getAndSet(timer));
+    }
+
+    /**
+     * Stop watching an operation that ended, the operation it ran in is watched again.
+     *
+     * @param timer the timer of the operation.
+     */
+    void exit(PhaseTimer timer) {
+        if (Thread.currentThread() != this.mainThread) return;
+        this.watched.compareAndSet(timer, timer.getOuter());
+    }
+
+    private void watch() {
+        PhaseTimer reported = null;
+        long reportedPhaseStart = 0;
+        long nextReport = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(CHECK_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            PhaseTimer timer = this.watched.get();
+            long now = System.nanoTime();
+
+            if (timer != null && this.lastTick - timer.getBegin() > 0) {
+                this.watched.compareAndSet(timer, null);
+                timer = null;
+            }
+
+            long phaseStart = timer == null ? 0 : timer.getPhaseStart();
+            if (reported != null && (timer != reported || phaseStart != reportedPhaseStart)) {
+                this.plugMan.getLogger().warning("The main thread resumed after " + TimeUnit.NANOSECONDS.toMillis(now - reportedPhaseStart) + "ms");
+                reported = null;
+            }
+
+            if (timer == null || now - phaseStart < this.thresholdNanos) continue;
+
+            if (reported == null) {
+                reported = timer;
+                reportedPhaseStart = phaseStart;
+                nextReport = now;
+
+                if (this.abortQueued && this.plugMan.getOperationScheduler() != null)
+                    this.plugMan.getOperationScheduler().requestAbort();
+            }
+
+            if (now - nextReport < 0) continue;
+            nextReport = now + this.intervalNanos;
+            this.report(timer, now - phaseStart);
+        }
+    }
+
+    private void report(PhaseTimer timer, long stalledNanos) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("The main thread has been stuck for ").append(TimeUnit.NANOSECONDS.toMillis(stalledNanos)).append("ms in the ")
+                .append(timer.getPhase() == null ? "first" : timer.getPhase()).append(" phase of ").append(timer.getOperation()).append(' ').append(timer.getPluginName());
+        if (this.abortQueued) builder.append(", the bulk operation it belongs to and the queued ones will be aborted");
+
+        Throwable stack = new Throwable("Main thread stack");
+        stack.setStackTrace(this.mainThread.getStackTrace());
+        this.plugMan.getLogger().log(Level.WARNING, builder.toString(), stack);
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.StartupRecord;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Records how long every plugin takes to enable while the server boots, and keeps a history of past boots.
+ * <p>
+ * PlugMan enables at STARTUP, before the worlds and most other plugins. Bukkit enables plugins one after another
+ * and fires a {@link PluginEnableEvent} after each, so the time between two events is the enable time of the
+ * second plugin. World loading is excluded by restarting the clock on every {@link WorldLoadEvent}. The boot ends
+ * with the first server tick.
+ * <p>
+ * Loading, i.e. constructing plugins and calling onLoad, happens before PlugMan can register any listener, so
+ * it is only contained in the total boot time.
+ */
+public class StartupProfiler implements Listener {
+
+    /**
+     * The instance of PlugMan.
+     */
+    private final PlugMan plugMan;
+
+    /**
+     * The file holding one JSON record per boot.
+     */
+    private final File historyFile;
+
+    /**
+     * How many boots to keep in the history.
+     */
+    private final int historySize;
+
+    /**
+     * Recorded boots, oldest first, including the current one once it finished.
+     */
+    private final List<StartupRecord> history = new ArrayList<>();
+
+    /**
+     * How long every plugin took to enable so far in nanoseconds, in enable order.
+     */
+    private final Map<String, Long> enableNanos = new LinkedHashMap<>();
+
+    /**
+     * When the plugin enabling next started, from {@link System#nanoTime()}.
+     */
+    private long mark = System.nanoTime();
+
+    /**
+     * Construct the object.
+     *
+     * @param plugMan     the instance of PlugMan.
+     * @param historyFile the file holding one JSON record per boot.
+     * @param historySize how many boots to keep in the history.
+     */
+    public StartupProfiler(PlugMan plugMan, File historyFile, int historySize) {
+        this.plugMan = plugMan;
+        this.historyFile = historyFile;
+        this.historySize = Math.max(1, historySize);
+    }
+
+    /**
+     * Read the history of past boots.
+     */
+    public void load() {
+        this.history.clear();
+        if (!this.historyFile.isFile()) return;
+
+        try {
+            for (String line : Files.readAllLines(this.historyFile.toPath(), StandardCharsets.UTF_8)) {
+                Object object = JSONValue.parse(line);
+                if (object instanceof JSONObject) this.history.add(StartupProfiler.fromJson((JSONObject) object));
+            }
+        } catch (IOException | RuntimeException e) {
+            this.plugMan.getLogger().log(Level.WARNING, "Could not read the startup history", e);
+        }
+    }
+
+    /**
+     * Start profiling the running boot, must be called while PlugMan enables.
+     */
+    public void start() {
+        Bukkit.getPluginManager().registerEvents(this, this.plugMan);
+
+        // Scheduled tasks only run once the server ticks, i.e. once every plugin is enabled
+        Bukkit.getScheduler().runTask(this.plugMan, this::finish);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        this.mark = System.nanoTime();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        long now = System.nanoTime();
+        if (event.getPlugin() != this.plugMan) this.enableNanos.put(event.getPlugin().getName(), now - this.mark);
+        this.mark = now;
+    }
+
+    /**
+     * Stop profiling and append the boot to the history.
+     */
+    private void finish() {
+        HandlerList.unregisterAll(this);
+
+        Map<String, Long> enableMillis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : this.enableNanos.entrySet())
+            enableMillis.put(entry.getKey(), entry.getValue() / 1_000_000);
+
+        StartupRecord record = new StartupRecord(System.currentTimeMillis(), ManagementFactory.getRuntimeMXBean().getUptime(), enableMillis);
+        this.history.add(record);
+        while (this.history.size() > this.historySize) this.history.remove(0);
+
+        List<String> lines = new ArrayList<>();
+        for (StartupRecord entry : this.history) lines.add(StartupProfiler.toJson(entry).toJSONString());
+
+        Bukkit.getScheduler().runTaskAsynchronously(this.plugMan, () -> {
+            try {
+                Files.createDirectories(this.historyFile.getParentFile().toPath());
+                Files.write(this.historyFile.toPath(), lines, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                this.plugMan.getLogger().log(Level.WARNING, "Could not write the startup history", e);
+            }
+        });
+
+        this.plugMan.getLogger().info("Server started in " + record.getBootMillis() + "ms, " + enableMillis.size() + " plugins enabled after PlugMan");
+    }
+
+    /**
+     * Get the recorded boots.
+     *
+     * @return the boots, oldest first.
+     */
+    public List<StartupRecord> getHistory() {
+        return Collections.unmodifiableList(this.history);
+    }
+
+    /**
+     * Get the median enable time of a plugin over a number of boots.
+     *
+     * @param records    the boots.
+     * @param pluginName the name of the plugin.
+     * @return the median in milliseconds, or -1 if the plugin was not enabled in any of them.
+     */
+    public static long getMedianEnableMillis(List<StartupRecord> records, String pluginName) {
+        List<Long> values = new ArrayList<>();
+        for (StartupRecord record : records) {
+            Long millis = record.getEnableMillis().get(pluginName);
+            if (millis != null) values.add(millis);
+        }
+        if (values.isEmpty()) return -1;
+
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject toJson(StartupRecord record) {
+        JSONArray plugins = new JSONArray();
+        for (Map.Entry<String, Long> entry : record.getEnableMillis().entrySet()) {
+            JSONObject plugin = new JSONObject();
+            plugin.put("name", entry.getKey());
+            plugin.put("enable-millis", entry.getValue());
+            plugins.add(plugin);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("time", record.getTime());
+        json.put("boot-millis", record.getBootMillis());
+        json.put("plugins", plugins);
+        return json;
+    }
+
+    private static StartupRecord fromJson(JSONObject json) {
+        Map<String, Long> enableMillis = new LinkedHashMap<>();
+        Object plugins = json.get("plugins");
+        if (plugins instanceof JSONArray) for (Object object : (JSONArray) plugins) {
+            JSONObject plugin = (JSONObject) object;
+            enableMillis.put((String) plugin.get("name"), ((Number) plugin.get("enable-millis")).longValue());
+        }
+        return new StartupRecord(((Number) json.get("time")).longValue(), ((Number) json.get("boot-millis")).longValue(), enableMillis);
+    }
+
+}
@@ -26,6 +26,8 @@ package com.rylinaux.plugman.util;
  * #L%
  */
 
+import java.util.Locale;
+
 /**
  * Utilities for String manipulation.
  *
@@ -49,4 +51,25 @@ public class StringUtil {
         return ret;
     }
 
+    /**
+     * Returns a duration in milliseconds with one decimal.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    public static String toMillis(long nanos) {
+        return StringUtil.toMillis(nanos, 1);
+    }
+
+    /**
+     * Returns a duration in milliseconds.
+     *
+     * @param nanos    the duration in nanoseconds
+     * @param decimals the number of decimals
+     * @return the duration in milliseconds
+     */
+    public static String toMillis(long nanos, int decimals) {
+        return String.format(Locale.ROOT, "%." + decimals + "f", nanos / 1_000_000.0);
+    }
+
 }
@@ -0,0 +1,317 @@
+package com.rylinaux.plugman.util;
+
+/*
+ * #%L
+ * PlugMan
+ * %%
+ * Copyright (C) 2010 - 2015 PlugMan
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.rylinaux.plugman.PlugMan;
+import com.rylinaux.plugman.pojo.TaskStats;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.scheduler.BukkitWorker;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Accounts scheduler tasks to the plugins owning them.
+ * <p>
+ * Counting tasks only needs the scheduler API. Measuring how long sync tasks run swaps the runnable inside every
+ * pending sync task for a timing one and swaps it back once the window ends, as the scheduler has no hook for
+ * it. Tasks scheduled while profiling are not measured.
+ */
+public class TaskProfiler {
+
+    /**
+     * Fields holding the code of a task by task class, empty if the class has none that can be swapped.
+     */
+    private static final Map<Class<?>, List<Field>> TASK_FIELDS = new ConcurrentHashMap<>();
+
+    /**
+     * The instance of PlugMan.
+     */
+    private final PlugMan plugMan;
+
+    /**
+     * Every swapped field and what it held before.
+     */
+    private final List<SwappedTask> swapped = new ArrayList<>();
+
+    /**
+     * Stats of the running profile by lower case plugin name.
+     */
+    private final Map<String, TaskStats> stats = new HashMap<>();
+
+    /**
+     * Stats of the last finished profile by lower case plugin name.
+     */
+    private Map<String, TaskStats> lastResults = Collections.emptyMap();
+
+    /**
+     * How long the last finished profile ran, in seconds.
+     */
+    private int lastSeconds = 0;
+
+    /**
+     * How long the running profile runs, in seconds.
+     */
+    private int seconds = 0;
+
+    /**
+     * Receives the results once profiling ends.
+     */
+    private Consumer<List<TaskStats>> callback = null;
+
+    /**
+     * The task ending profiling, null if not profiling.
+     */
+    private BukkitTask stopTask = null;
+
+    /**
+     * The first reflection failure while swapping or restoring tasks, logged once the pass is done.
+     */
+    private Exception failure = null;
+
+    /**
+     * The number of fields that could not be swapped or restored in the current pass.
+     */
+    private int failures = 0;
+
+    /**
+     * Construct the object.
+     *
+     * @param plugMan the instance of PlugMan.
+     */
+    public TaskProfiler(PlugMan plugMan) {
+        this.plugMan = plugMan;
+    }
+
+    /**
+     * Count the pending and running tasks of every plugin.
+     *
+     * @return the task counts by lower case plugin name.
+     */
+    public static Map<String, TaskStats> snapshot() {
+        Map<String, TaskStats> snapshot = new TreeMap<>();
+        for (BukkitTask task : Bukkit.getScheduler().getPendingTasks()) {
+            if (task.getOwner() == null || task.isCancelled()) continue;
+            snapshot.computeIfAbsent(task.getOwner().getName().toLowerCase(Locale.ROOT), key -> new TaskStats(task.getOwner().getName())).addPendingTask(task.isSync());
+        }
+        for (BukkitWorker worker : Bukkit.getScheduler().getActiveWorkers()) {
+            if (worker.getOwner() == null) continue;
+            snapshot.computeIfAbsent(worker.getOwner().getName().toLowerCase(Locale.ROOT), key -> new TaskStats(worker.getOwner().getName())).addRunningTask();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Start measuring sync tasks, must be called on the main thread.
+     *
+     * @param seconds  how long to measure.
+     * @param callback receives the results, most expensive first, once the window ends.
+     * @return the number of measured tasks, or -1 if already profiling.
+     */
+    public int start(int seconds, Consumer<List<TaskStats>> callback) {
+        if (this.isRunning()) return -1;
+
+        this.stats.clear();
+        this.stats.putAll(TaskProfiler.snapshot());
+        this.callback = callback;
+        this.seconds = seconds;
+
+        int measured = 0;
+        for (BukkitTask task : Bukkit.getScheduler().getPendingTasks()) {
+            if (!task.isSync() || task.isCancelled() || task.getOwner() == null) continue;
+
+            Plugin owner = task.getOwner();
+            TaskStats taskStats = this.stats.computeIfAbsent(owner.getName().toLowerCase(Locale.ROOT), key -> new TaskStats(owner.getName()));
+            if (this.swap(task, taskStats.getHistogram())) measured++;
+        }
+        this.logFailures("swap");
+
+        this.stopTask = Bukkit.getScheduler().runTaskLater(this.plugMan, this::stop, Math.max(1, seconds) * 20L);
+        return measured;
+    }
+
+    /**
+     * Stop measuring, restore the original tasks and pass the results on.
+     */
+    public void stop() {
+        if (!this.isRunning()) return;
+
+        this.stopTask.cancel();
+        this.stopTask = null;
+
+        for (SwappedTask swappedTask : this.swapped)
+            try {
+                // Only restore what is still ours, a cancelled task may have cleared its fields
+                if (swappedTask.field.get(swappedTask.task) == swappedTask.replacement)
+                    swappedTask.field.set(swappedTask.task, swappedTask.original);
+            } catch (IllegalAccessException e) {
+                this.recordFailure(e);
+            }
+        this.swapped.clear();
+        this.logFailures("restore");
+
+        this.lastResults = new HashMap<>(this.stats);
+        this.lastSeconds = this.seconds;
+
+        List<TaskStats> results = new ArrayList<>(this.stats.values());
+        results.sort(Comparator.comparingLong((TaskStats stats) -> stats.getHistogram().getSum()).reversed());
+
+        Consumer<List<TaskStats>> callback = this.callback;
+        this.callback = null;
+        if (callback != null) callback.accept(results);
+    }
+
+    /**
+     * Check whether tasks are being measured.
+     *
+     * @return whether profiling is running.
+     */
+    public boolean isRunning() {
+        return this.stopTask != null;
+    }
+
+    /**
+     * Get the stats of a plugin from the last finished profile.
+     *
+     * @param plugin the plugin.
+     * @return the stats, or null if the plugin had no tasks or nothing was profiled yet.
+     */
+    public TaskStats getLastResult(Plugin plugin) {
+        return this.lastResults.get(plugin.getName().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Get how long the last finished profile ran.
+     *
+     * @return the duration in seconds, 0 if nothing was profiled yet.
+     */
+    public int getLastSeconds() {
+        return this.lastSeconds;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean swap(BukkitTask task, LatencyHistogram histogram) {
+        boolean swappedAny = false;
+        for (Field field : TaskProfiler.getTaskFields(task.getClass()))
+            try {
+                Object original = field.get(task);
+                if (original == null) continue;
+
+                Object replacement;
+                if (original instanceof Runnable) {
+                    Runnable runnable = (Runnable) original;
+                    replacement = (Runnable) () -> {
+                        long start = System.nanoTime();
+                        try {
+                            runnable.run();
+                        } finally {
+                            histogram.record(System.nanoTime() - start);
+                        }
+                    };
+                } else {
+                    Consumer<Object> consumer = (Consumer<Object>) original;
+                    replacement = (Consumer<Object>) value -> {
+                        long start = System.nanoTime();
+                        try {
+                            consumer.accept(value);
+                        } finally {
+                            histogram.record(System.nanoTime() - start);
+                        }
+                    };
+                }
+
+                field.set(task, replacement);
+                this.swapped.add(new SwappedTask(task, field, original, replacement));
+                swappedAny = true;
+            } catch (IllegalAccessException | RuntimeException e) {
+                this.recordFailure(e);
+            }
+        return swappedAny;
+    }
+
+    private void recordFailure(Exception e) {
+        if (this.failure == null) this.failure = e;
+        this.failures++;
+    }
+
+    private void logFailures(String action) {
+        if (this.failure == null) return;
+        this.plugMan.getLogger().log(Level.WARNING, "Could not " + action + " " + this.failures + " task fields", this.failure);
+        this.failure = null;
+        this.failures = 0;
+    }
+
+    private static List<Field> getTaskFields(Class<?> type) {
+        return TASK_FIELDS.computeIfAbsent(type, key -> {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> current = key; current != null && current != Object.class; current = current.getSuperclass())
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) continue;
+                    if (field.getType() != Runnable.class && field.getType() != Consumer.class) continue;
+                    try {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    } catch (RuntimeException ignored) {
+                    }
+                }
+            return fields;
+        });
+    }
+
+    /**
+     * A task field holding a timing replacement.
+     */
+    private static class SwappedTask {
+
+        private final BukkitTask task;
+        private final Field field;
+        private final Object original;
+        private final Object replacement;
+
+        private SwappedTask(BukkitTask task, Field field, Object original, Object replacement) {
+            this.task = task;
+            this.field = field;
+            this.original = original;
+            this.replacement = replacement;
+        }
+
+    }
+
+}
@@ -32,6 +32,7 @@ public class UpdateUtil {
      */
     public static UpdateResult checkUpToDate(String pluginName) {
         if (PlugMan.getInstance().getResourceMap().containsKey(pluginName.toLowerCase(Locale.ROOT))) {
+            PlugMan.getInstance().getMetricsRegistry().counter("update.resource-map.hits").increment();
             Map.Entry<Long, Boolean> entry = PlugMan.getInstance().getResourceMap().get(pluginName.toLowerCase(Locale.ROOT));
 
             if (entry.getValue()) {
@@ -41,6 +42,8 @@ public class UpdateUtil {
             }
         }
 
+        PlugMan.getInstance().getMetricsRegistry().counter("update.resource-map.misses").increment();
+
         long id = SpiGetUtil.getPluginId(pluginName);
         if (id < 0) {
             id = CurseForgeUtil.getPluginId(pluginName);
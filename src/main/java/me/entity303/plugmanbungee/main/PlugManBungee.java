@@ -1,15 +1,28 @@
 package me.entity303.plugmanbungee.main;
 
+import com.rylinaux.plugman.util.MetricsRegistry;
+import com.rylinaux.plugman.util.PlugManMetrics;
+import com.rylinaux.plugman.util.PrometheusExporter;
 import me.entity303.plugmanbungee.commands.PlugManBungeeCommand;
 import me.entity303.plugmanbungee.commands.PluginsCommand;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.api.plugin.Plugin;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
 
+import javax.management.JMException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 public final class PlugManBungee extends Plugin implements Listener {
     private static PlugManBungee instance;
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+    private PlugManMetrics plugManMetrics;
+    private ScheduledTask prometheusTask;
 
     @Override
     public void onEnable() {
@@ -26,10 +39,49 @@ public final class PlugManBungee extends Plugin implements Listener {
                 getLogger().severe("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
             }, i, TimeUnit.SECONDS);
         }
+
+        startMetricsExport();
     }
 
     @Override
     public void onDisable() {
+        if (prometheusTask != null) prometheusTask.cancel();
+        if (plugManMetrics != null) plugManMetrics.unregister();
+    }
+
+    // There is no config on this side yet, metrics are configured through the plugman.metrics.* system properties
+    private void startMetricsExport() {
+        metricsRegistry.gauge("plugins.loaded", () -> ProxyServer.getInstance().getPluginManager().getPlugins().size());
+        plugManMetrics = new PlugManMetrics(metricsRegistry, PlugManBungee::getPluginStates);
+
+        if (Boolean.parseBoolean(System.getProperty("plugman.metrics.jmx", "true"))) try {
+            plugManMetrics.register("bungee");
+        } catch (JMException e) {
+            getLogger().log(Level.WARNING, "Could not register the metrics MBean", e);
+        }
+
+        long interval = Long.getLong("plugman.metrics.prometheus-interval-seconds", 30);
+        if (interval <= 0) return;
+
+        PrometheusExporter prometheusExporter = new PrometheusExporter(plugManMetrics, new File(getDataFolder(), "metrics.prom"));
+        prometheusTask = ProxyServer.getInstance().getScheduler().schedule(this, () -> {
+            try {
+                prometheusExporter.export();
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Could not write the Prometheus metrics file", e);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static Map<String, Boolean> getPluginStates() {
+        Map<String, Boolean> states = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Plugin plugin : ProxyServer.getInstance().getPluginManager().getPlugins())
+            states.put(plugin.getDescription().getName(), true);
+        return states;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
     }
 
     public static PlugManBungee getInstance() {
@@ -1,5 +1,7 @@
 package me.entity303.plugmanbungee.util;
 
+import com.rylinaux.plugman.util.MetricsRegistry;
+import com.rylinaux.plugman.util.ReclamationPolicy;
 import me.entity303.plugmanbungee.main.PlugManBungee;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.plugin.Plugin;
@@ -24,12 +26,14 @@ public class BungeePluginUtil {
 
     public static Map.Entry<PluginResult, PluginResult> reloadPlugin(Plugin plugin) {
         File file = plugin.getFile();
-
+        long start = System.nanoTime();
 
         PluginResult result1 = unloadPlugin(plugin);
 
         PluginResult result2 = loadPlugin(file);
 
+        record("reload", start, result1.isPositive() && result2.isPositive());
+
         return new Map.Entry<PluginResult, PluginResult>() {
             @Override
             public PluginResult getKey() {
@@ -49,6 +53,26 @@ public class BungeePluginUtil {
     }
 
     public static PluginResult unloadPlugin(Plugin plugin) {
+        long start = System.nanoTime();
+        PluginResult result = doUnloadPlugin(plugin);
+        record("unload", start, result.isPositive());
+        return result;
+    }
+
+    public static PluginResult loadPlugin(File file) {
+        long start = System.nanoTime();
+        PluginResult result = doLoadPlugin(file);
+        record("load", start, result.isPositive());
+        return result;
+    }
+
+    private static void record(String operation, long start, boolean success) {
+        MetricsRegistry metricsRegistry = PlugManBungee.getInstance().getMetricsRegistry();
+        metricsRegistry.histogram(operation).record(System.nanoTime() - start);
+        if (!success) metricsRegistry.counter(operation + ".failed").increment();
+    }
+
+    private static PluginResult doUnloadPlugin(Plugin plugin) {
         boolean exception = false;
         PluginManager pluginManager = ProxyServer.getInstance().getPluginManager();
         try {
@@ -124,9 +148,8 @@ public class BungeePluginUtil {
 
         }
 
-        // Will not work on processes started with the -XX:+DisableExplicitGC flag, but lets try it anyway.
-        // This tries to get around the issue where Windows refuses to unlock jar files that were previously loaded into the JVM.
-        System.gc();
+        ReclamationPolicy.parse(System.getProperty("plugman.reclamation-policy"), ReclamationPolicy.PLATFORM).reclaim(PlugManBungee.getInstance().getLogger());
+
         if (exception) {
             return new PluginResult("§cAn unknown error occured while unloading, see console for more info!", false);
         } else {
@@ -134,7 +157,7 @@ public class BungeePluginUtil {
         }
     }
 
-    public static PluginResult loadPlugin(File file) {
+    private static PluginResult doLoadPlugin(File file) {
         PluginManager pluginManager = ProxyServer.getInstance().getPluginManager();
 
         Field yamlField = null;